@@ -0,0 +1,77 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.rybalkin_an.spring_mqtt.model.Sensor;
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of one sensor reading in each wire format. {@code jacksonSensor} is the
+ * original {@link Sensor} model serialized with Jackson, as a baseline for the codecs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorCodecBenchmark {
+
+    private final JsonSensorCodec json = new JsonSensorCodec();
+    private final BinarySensorCodec binary = new BinarySensorCodec();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SensorReading reading = new SensorReading();
+    private final SensorReading decoded = new SensorReading();
+    private final Sensor sensor = new Sensor();
+
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+
+    @Setup
+    public void setUp() {
+        UUID uuid = UUID.randomUUID();
+        reading.setUuid(uuid);
+        reading.setEpochMillis(System.currentTimeMillis());
+        reading.setValue(23.456789);
+        sensor.setUuid(uuid);
+        sensor.setTimestamp("2024-10-01 12:00:00");
+        sensor.setValue(BigDecimal.valueOf(23.456789));
+        jsonPayload = json.encode(reading);
+        binaryPayload = binary.encode(reading);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return json.encode(reading);
+    }
+
+    @Benchmark
+    public SensorReading decodeJson() {
+        json.decode(jsonPayload, decoded);
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binary.encode(reading);
+    }
+
+    @Benchmark
+    public SensorReading decodeBinary() {
+        binary.decode(binaryPayload, decoded);
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] jacksonSensor() throws Exception {
+        return objectMapper.writeValueAsBytes(sensor);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.service.MqttMessageSubscriber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivery of received messages through the {@link FanOutHub} to {@link MqttMessageSubscriber}s,
+ * the path {@code MqttSubscriber.messageArrived} hands every message to. Each invocation publishes
+ * {@value #BATCH} messages and waits until every subscriber has received all of them, so the score
+ * is messages per second in, each delivered {@code subscribers} times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FanOutHubBenchmark {
+
+    private static final int BATCH = 256;
+
+    @Param({"1", "100", "10000"})
+    private int subscribers;
+
+    private FanOutHub<InboundMessage> hub;
+    private final LongAdder delivered = new LongAdder();
+    private long expected;
+    private InboundMessage[] messages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        hub = new FanOutHub<>(1024, OverflowPolicy.DROP_NEWEST, 64, Executors.newFixedThreadPool(threads));
+        for (int i = 0; i < subscribers; i++) {
+            hub.subscribe("sensors/#", new MqttMessageSubscriber<InboundMessage>(message -> delivered.increment()));
+        }
+        messages = new InboundMessage[16];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new InboundMessage("sensors/" + i, new byte[64]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hub.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void publish() {
+        for (int i = 0; i < BATCH; i++) {
+            InboundMessage message = messages[i & (messages.length - 1)];
+            hub.publish(message.topic(), message);
+        }
+        expected += (long) BATCH * subscribers;
+        while (delivered.sum() + hub.getDroppedCount() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.rybalkin_an.spring_mqtt.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing one topic against a set of subscriptions: the trie used by the fan-out hub versus testing
+ * every filter in turn. A tenth of the filters use wildcards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicTrieBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int filters;
+
+    private final TopicTrie<String> trie = new TopicTrie<>();
+    private final List<String> filterList = new ArrayList<>();
+    private String[] topics;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < filters; i++) {
+            String filter = switch (i % 10) {
+                case 0 -> "building/" + (i % 100) + "/+/temperature";
+                case 1 -> "building/" + (i % 100) + "/#";
+                default -> "building/" + (i % 100) + "/floor/" + i;
+            };
+            trie.add(filter, filter);
+            filterList.add(filter);
+        }
+        topics = new String[1024];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = "building/" + (i % 100) + "/floor/" + (i * 7 % Math.max(1, filters));
+        }
+    }
+
+    @Benchmark
+    public void trieMatch(Blackhole blackhole) {
+        trie.match(nextTopic(), blackhole::consume);
+    }
+
+    @Benchmark
+    public void linearMatch(Blackhole blackhole) {
+        String topic = nextTopic();
+        for (String filter : filterList) {
+            if (TopicTrie.matches(filter, topic)) {
+                blackhole.consume(filter);
+            }
+        }
+    }
+
+    private String nextTopic() {
+        next = (next + 1) & (topics.length - 1);
+        return topics[next];
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import com.github.rybalkin_an.spring_mqtt.connection.Mqtt3Connection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.logging.MessageLog;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined publishing through {@link MqttPublisher} and the pooled Paho connections, acknowledged
+ * by a {@link StubBroker} on the loopback interface. Each invocation publishes {@value #BATCH}
+ * messages and waits for all acknowledgements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MqttPublisherBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"0", "1", "2"})
+    private int qos;
+
+    @Param({"1", "2"})
+    private int connections;
+
+    @Param({"64"})
+    private int payloadBytes;
+
+    private StubBroker broker;
+    private MqttConnectionPool pool;
+    private MqttPublisher publisher;
+    private byte[] payload;
+    private String[] topics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = new StubBroker();
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(BATCH);
+        MqttConnection[] publishers = new MqttConnection[connections];
+        for (int i = 0; i < connections; i++) {
+            publishers[i] = new Mqtt3Connection(
+                    new MqttAsyncClient(broker.getUrl(), "bench-pub-" + i, new MemoryPersistence()), options);
+        }
+        MqttConnection subscriber = new Mqtt3Connection(
+                new MqttAsyncClient(broker.getUrl(), "bench-sub", new MemoryPersistence()), options);
+        pool = new MqttConnectionPool(List.of(publishers), List.of(subscriber));
+        pool.connect();
+
+        publisher = new MqttPublisher();
+        inject(publisher, "connectionPool", pool);
+        inject(publisher, "messageLog", new MessageLog());
+
+        payload = new byte[payloadBytes];
+        topics = new String[16];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = "bench/sensor/" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+        broker.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void publishAsync() {
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            acks[i] = publisher.publishAsync(payload, topics[i & (topics.length - 1)], qos);
+        }
+        CompletableFuture.allOf(acks).join();
+    }
+
+    private static void inject(Object target, String field, Object value) {
+        Field declared = ReflectionUtils.findField(target.getClass(), field);
+        ReflectionUtils.makeAccessible(declared);
+        ReflectionUtils.setField(declared, target, value);
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process stand-in for a broker: speaks just enough MQTT 3.1.1 to accept connections and
+ * acknowledge publishes at every QoS, and discards the messages. It measures the client side of
+ * the publish path without the network and broker costs that would dominate a real round trip.
+ */
+class StubBroker implements AutoCloseable {
+
+    private static final int CONNECT = 1;
+    private static final int PUBLISH = 3;
+    private static final int PUBREL = 6;
+    private static final int PINGREQ = 12;
+    private static final int DISCONNECT = 14;
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    StubBroker() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "stub-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String getUrl() {
+        return "tcp://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                Thread session = new Thread(() -> serve(socket), "stub-broker-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 65536);
+            while (true) {
+                int header = in.readUnsignedByte();
+                int length = readRemainingLength(in);
+                switch (header >> 4) {
+                    case CONNECT -> {
+                        in.skipNBytes(length);
+                        out.write(new byte[]{0x20, 0x02, 0x00, 0x00});
+                    }
+                    case PUBLISH -> {
+                        int qos = (header >> 1) & 0x03;
+                        int topicLength = in.readUnsignedShort();
+                        in.skipNBytes(topicLength);
+                        int remaining = length - 2 - topicLength;
+                        if (qos > 0) {
+                            int packetId = in.readUnsignedShort();
+                            remaining -= 2;
+                            writeAck(out, qos == 1 ? 0x40 : 0x50, packetId);
+                        }
+                        in.skipNBytes(remaining);
+                    }
+                    case PUBREL -> writeAck(out, 0x70, in.readUnsignedShort());
+                    case PINGREQ -> out.write(new byte[]{(byte) 0xD0, 0x00});
+                    case DISCONNECT -> {
+                        return;
+                    }
+                    default -> in.skipNBytes(length);
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException e) {
+            // client went away
+        } catch (IOException e) {
+            sockets.remove(socket);
+        }
+    }
+
+    private static void writeAck(OutputStream out, int type, int packetId) throws IOException {
+        out.write(type);
+        out.write(0x02);
+        out.write(packetId >> 8);
+        out.write(packetId & 0xFF);
+    }
+
+    private static int readRemainingLength(DataInputStream in) throws IOException {
+        int length = 0;
+        int multiplier = 1;
+        int digit;
+        do {
+            digit = in.readUnsignedByte();
+            length += (digit & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while ((digit & 0x80) != 0);
+        return length;
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.rybalkin_an.spring_mqtt.aggregation;
+
+/**
+ * Constant-memory quantile sketch with relative-error guarantees (DDSketch-style). Values are
+ * counted in logarithmically sized buckets, so any quantile is returned within the configured
+ * relative accuracy of the true value. Each sign keeps at most {@code maxBins} buckets; beyond
+ * that the buckets closest to zero are collapsed, trading accuracy on the smallest magnitudes
+ * for a fixed memory footprint.
+ * <p>
+ * Not thread-safe.
+ */
+public class QuantileSketch {
+
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double gamma;
+    private final double logGamma;
+    private final Store positive;
+    private final Store negative;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.positive = new Store(maxBins);
+        this.negative = new Store(maxBins);
+    }
+
+    public void add(double value) {
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    /**
+     * Adds the content of the other sketch, which must have been created with the same accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the approximate value at the quantile, or {@code NaN} if the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < negative.total) {
+            // Negative values in ascending order means magnitudes in descending order
+            return -value(negative.indexAtRankFromHighest(rank));
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        return value(positive.indexAtRank(rank - zeroCount));
+    }
+
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Bucket counts for one sign, in a window of at most {@code maxBins} consecutive indexes
+     * that is allocated on first use.
+     */
+    private static final class Store {
+
+        private final int maxBins;
+        private long[] counts;
+        private int offset;
+        private long total;
+
+        private Store(int maxBins) {
+            this.maxBins = maxBins;
+        }
+
+        void add(int index, long n) {
+            if (counts == null) {
+                counts = new long[maxBins];
+                offset = index - maxBins + 1;
+            }
+            if (index < offset) {
+                int highest = highestIndex();
+                if (highest - index < maxBins) {
+                    shiftTo(index);
+                } else {
+                    index = offset;
+                }
+            } else if (index >= offset + maxBins) {
+                shiftTo(index - maxBins + 1);
+            }
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        void merge(Store other) {
+            if (other.counts == null) {
+                return;
+            }
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return highestIndex();
+        }
+
+        int indexAtRankFromHighest(long rank) {
+            long seen = 0;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+
+        void clear() {
+            if (counts != null) {
+                java.util.Arrays.fill(counts, 0);
+            }
+            total = 0;
+        }
+
+        private int highestIndex() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+
+        /**
+         * Moves the window to start at {@code newOffset}; buckets falling below it are collapsed into its first bucket.
+         */
+        private void shiftTo(int newOffset) {
+            long[] shifted = new long[maxBins];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    int target = Math.max(0, offset + i - newOffset);
+                    shifted[target] += counts[i];
+                }
+            }
+            counts = shifted;
+            offset = newOffset;
+        }
+    }
+}
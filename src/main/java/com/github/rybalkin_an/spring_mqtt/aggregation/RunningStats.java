@@ -0,0 +1,59 @@
+package com.github.rybalkin_an.spring_mqtt.aggregation;
+
+import com.github.rybalkin_an.spring_mqtt.model.AggregateSnapshot;
+import com.github.rybalkin_an.spring_mqtt.model.WindowKind;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Count, min, max, sum and a quantile sketch of the values added since the last {@link #clear()}.
+ */
+class RunningStats {
+
+    private final QuantileSketch sketch;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    RunningStats(double relativeAccuracy, int maxBins) {
+        this.sketch = new QuantileSketch(relativeAccuracy, maxBins);
+    }
+
+    void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        sketch.add(value);
+    }
+
+    void merge(RunningStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sketch.merge(other.sketch);
+    }
+
+    void clear() {
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum = 0;
+        sketch.clear();
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    AggregateSnapshot toSnapshot(UUID uuid, Duration window, WindowKind kind, long windowStart, long windowEnd) {
+        return new AggregateSnapshot(uuid, window, kind, windowStart, windowEnd, count, min, max, sum / count,
+                sketch.quantile(0.5), sketch.quantile(0.9), sketch.quantile(0.99));
+    }
+}
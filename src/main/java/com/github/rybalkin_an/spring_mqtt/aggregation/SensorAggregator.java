@@ -0,0 +1,225 @@
+package com.github.rybalkin_an.spring_mqtt.aggregation;
+
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
+import com.github.rybalkin_an.spring_mqtt.config.FanOutConfig;
+import com.github.rybalkin_an.spring_mqtt.config.MqttConfig;
+import com.github.rybalkin_an.spring_mqtt.model.AggregateSnapshot;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import com.github.rybalkin_an.spring_mqtt.model.WindowKind;
+import com.github.rybalkin_an.spring_mqtt.service.MqttMessageSubscriber;
+import com.github.rybalkin_an.spring_mqtt.service.MqttSubscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the sensor readings arriving on {@code aggregation.topic} per sensor uuid, over each of
+ * the configured {@code aggregation.windows}. Readings are consumed from the fan-out hub like any
+ * other stream, so the aggregator only ever sees what the hub delivers and never blocks ingestion.
+ */
+@Component
+public class SensorAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorAggregator.class);
+
+    @Autowired
+    private MqttSubscriber mqttSubscriber;
+
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    @Autowired
+    private MqttConfig mqttConfig;
+
+    @Autowired
+    private FanOutConfig fanOutConfig;
+
+    @Value("${aggregation.enabled}")
+    private boolean enabled;
+
+    @Value("${aggregation.topic}")
+    private String topic;
+
+    @Value("${aggregation.windows}")
+    private List<String> windowSettings;
+
+    @Value("${aggregation.slots}")
+    private int slots;
+
+    @Value("${aggregation.sketch.relative-accuracy}")
+    private double relativeAccuracy;
+
+    @Value("${aggregation.sketch.max-bins}")
+    private int maxBins;
+
+    @Value("${aggregation.max-sensors}")
+    private int maxSensors;
+
+    private final List<Duration> windows = new ArrayList<>();
+
+    private final Map<UUID, SensorWindows> sensors = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    // Only touched by the hub's drain of our single subscription, which never runs concurrently
+    private final SensorReading reading = new SensorReading();
+
+    private MqttMessageSubscriber<InboundMessage> messageSubscriber;
+
+    @PostConstruct
+    void start() {
+        for (String setting : windowSettings) {
+            windows.add(DurationStyle.detectAndParse(setting.strip()));
+        }
+        if (!enabled) {
+            return;
+        }
+        messageSubscriber = new MqttMessageSubscriber<>(this::accept, fanOutConfig.getDemandBatch());
+        mqttSubscriber.subscribeToMessages(topic, messageSubscriber);
+        try {
+            mqttSubscriber.subscribe(topic, mqttConfig.getQos());
+        } catch (Exception e) {
+            logger.warn("Failed to subscribe to {} for aggregation: {}", topic, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (messageSubscriber != null) {
+            messageSubscriber.cancel();
+            mqttSubscriber.unsubscribe(topic);
+        }
+    }
+
+    void accept(InboundMessage message) {
+        reading.setUuidMostSignificantBits(0);
+        reading.setUuidLeastSignificantBits(0);
+        reading.setValue(Double.NaN);
+        try {
+            sensorCodecs.decode(message.payload(), reading);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Skipping non-sensor message on {}: {}", message.topic(), e.getMessage());
+            rejectedCount.incrementAndGet();
+            return;
+        }
+        if (Double.isNaN(reading.getValue())
+                || (reading.getUuidMostSignificantBits() == 0 && reading.getUuidLeastSignificantBits() == 0)) {
+            rejectedCount.incrementAndGet();
+            return;
+        }
+        UUID uuid = reading.getUuid();
+        SensorWindows sensor = sensors.get(uuid);
+        if (sensor == null) {
+            if (sensors.size() >= maxSensors) {
+                rejectedCount.incrementAndGet();
+                return;
+            }
+            sensor = sensors.computeIfAbsent(uuid, SensorWindows::new);
+        }
+        sensor.add(System.currentTimeMillis(), reading.getValue());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    /**
+     * @return number of messages ignored because they were not sensor readings or exceeded {@code aggregation.max-sensors}.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the aggregates of every sensor with readings in the window.
+     * @throws IllegalArgumentException if the window is not one of {@link #getWindows()}.
+     */
+    public List<AggregateSnapshot> snapshot(Duration window, WindowKind kind) {
+        int index = windowIndex(window);
+        long now = System.currentTimeMillis();
+        List<AggregateSnapshot> snapshots = new ArrayList<>(sensors.size());
+        for (SensorWindows sensor : sensors.values()) {
+            AggregateSnapshot snapshot = sensor.snapshot(index, kind, now);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return every window and kind of one sensor that has readings, empty if the sensor is unknown.
+     */
+    public List<AggregateSnapshot> snapshot(UUID uuid) {
+        SensorWindows sensor = sensors.get(uuid);
+        List<AggregateSnapshot> snapshots = new ArrayList<>();
+        if (sensor == null) {
+            return snapshots;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < windows.size(); i++) {
+            for (WindowKind kind : WindowKind.values()) {
+                AggregateSnapshot snapshot = sensor.snapshot(i, kind, now);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return the step in which sliding windows of this length advance.
+     */
+    public Duration slotLength(Duration window) {
+        return Duration.ofMillis(Math.max(1, window.toMillis() / slots));
+    }
+
+    private int windowIndex(Duration window) {
+        int index = windows.indexOf(window);
+        if (index < 0) {
+            throw new IllegalArgumentException("Window " + window + " is not aggregated, configured windows: " + windows);
+        }
+        return index;
+    }
+
+    private final class SensorWindows {
+
+        private final WindowedStats[] stats;
+
+        SensorWindows(UUID uuid) {
+            stats = new WindowedStats[windows.size()];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new WindowedStats(uuid, windows.get(i), slots, relativeAccuracy, maxBins);
+            }
+        }
+
+        synchronized void add(long now, double value) {
+            for (WindowedStats window : stats) {
+                window.add(now, value);
+            }
+        }
+
+        synchronized AggregateSnapshot snapshot(int index, WindowKind kind, long now) {
+            return kind == WindowKind.TUMBLING ? stats[index].tumbling(now) : stats[index].sliding(now);
+        }
+    }
+}
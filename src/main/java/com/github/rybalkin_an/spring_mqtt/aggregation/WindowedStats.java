@@ -0,0 +1,105 @@
+package com.github.rybalkin_an.spring_mqtt.aggregation;
+
+import com.github.rybalkin_an.spring_mqtt.model.AggregateSnapshot;
+import com.github.rybalkin_an.spring_mqtt.model.WindowKind;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Tumbling and sliding statistics over one window length. The sliding window is a ring of
+ * {@code slots} sub-windows merged on read, so it advances in steps of {@code window / slots};
+ * memory stays constant whatever the message rate.
+ * <p>
+ * Not thread-safe; times are epoch milliseconds and expected to be non-decreasing.
+ */
+class WindowedStats {
+
+    private final UUID uuid;
+    private final Duration window;
+    private final long windowMillis;
+    private final long slotMillis;
+
+    private final RunningStats[] slots;
+    private final long[] slotIndexes;
+
+    private final RunningStats currentTumbling;
+    private long currentTumblingIndex = Long.MIN_VALUE;
+    private AggregateSnapshot lastTumbling;
+
+    private final RunningStats merged;
+
+    WindowedStats(UUID uuid, Duration window, int slotCount, double relativeAccuracy, int maxBins) {
+        this.uuid = uuid;
+        this.window = window;
+        this.windowMillis = window.toMillis();
+        this.slotMillis = Math.max(1, windowMillis / slotCount);
+        this.slots = new RunningStats[slotCount];
+        this.slotIndexes = new long[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new RunningStats(relativeAccuracy, maxBins);
+            slotIndexes[i] = Long.MIN_VALUE;
+        }
+        this.currentTumbling = new RunningStats(relativeAccuracy, maxBins);
+        this.merged = new RunningStats(relativeAccuracy, maxBins);
+    }
+
+    Duration getWindow() {
+        return window;
+    }
+
+    void add(long now, double value) {
+        long slotIndex = Math.floorDiv(now, slotMillis);
+        int position = (int) Math.floorMod(slotIndex, (long) slots.length);
+        if (slotIndexes[position] != slotIndex) {
+            slots[position].clear();
+            slotIndexes[position] = slotIndex;
+        }
+        slots[position].add(value);
+
+        rollTumbling(now);
+        currentTumbling.add(value);
+    }
+
+    /**
+     * @return the last completed tumbling window, or {@code null} if it had no readings.
+     */
+    AggregateSnapshot tumbling(long now) {
+        rollTumbling(now);
+        return lastTumbling;
+    }
+
+    /**
+     * @return the window ending at the current slot, or {@code null} if it has no readings.
+     */
+    AggregateSnapshot sliding(long now) {
+        long newestSlot = Math.floorDiv(now, slotMillis);
+        long oldestSlot = newestSlot - slots.length + 1;
+        merged.clear();
+        for (int i = 0; i < slots.length; i++) {
+            if (slotIndexes[i] >= oldestSlot && slotIndexes[i] <= newestSlot) {
+                merged.merge(slots[i]);
+            }
+        }
+        if (merged.getCount() == 0) {
+            return null;
+        }
+        return merged.toSnapshot(uuid, window, WindowKind.SLIDING, oldestSlot * slotMillis, (newestSlot + 1) * slotMillis);
+    }
+
+    private void rollTumbling(long now) {
+        long windowIndex = Math.floorDiv(now, windowMillis);
+        if (windowIndex == currentTumblingIndex) {
+            return;
+        }
+        // Only the window directly before the current one is "last completed"; anything older is stale
+        if (windowIndex == currentTumblingIndex + 1 && currentTumbling.getCount() > 0) {
+            long start = currentTumblingIndex * windowMillis;
+            lastTumbling = currentTumbling.toSnapshot(uuid, window, WindowKind.TUMBLING, start, start + windowMillis);
+        } else {
+            lastTumbling = null;
+        }
+        currentTumbling.clear();
+        currentTumblingIndex = windowIndex;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.rybalkin_an.spring_mqtt.broker;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Properties;
+
+/**
+ * A Moquette broker running inside the application, with in-memory sessions and anonymous access.
+ * It listens on the given interface only, by default loopback, so the application, the simulator and
+ * the tests run without a network and with reproducible latency.
+ */
+public class EmbeddedBroker implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedBroker.class);
+
+    private final Server server = new Server();
+    private final String host;
+    private int port;
+
+    /**
+     * @param port listener port, or 0 for any free port
+     */
+    public EmbeddedBroker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        if (port == 0) {
+            try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getByName(host))) {
+                port = probe.getLocalPort();
+            }
+        }
+        Properties properties = new Properties();
+        properties.setProperty(IConfig.HOST_PROPERTY_NAME, host);
+        properties.setProperty(IConfig.PORT_PROPERTY_NAME, Integer.toString(port));
+        properties.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+        properties.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        server.startServer(new MemoryConfig(properties));
+        logger.info("Embedded MQTT broker listening on {}", getUrl());
+    }
+
+    public String getUrl() {
+        return "tcp://" + host + ":" + port;
+    }
+
+    @Override
+    public void close() {
+        server.stopServer();
+        logger.info("Embedded MQTT broker stopped.");
+    }
+}
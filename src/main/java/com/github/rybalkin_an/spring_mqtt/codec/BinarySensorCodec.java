@@ -0,0 +1,51 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary encoding of a reading, 33 bytes big-endian:
+ * <pre>
+ * [0]      format marker 0xB1
+ * [1..8]   uuid most significant bits
+ * [9..16]  uuid least significant bits
+ * [17..24] epoch millis
+ * [25..32] value as IEEE 754 double
+ * </pre>
+ * The marker never starts a JSON document, so payloads of both formats can be told apart.
+ */
+public class BinarySensorCodec implements SensorCodec {
+
+    public static final byte MARKER = (byte) 0xB1;
+
+    public static final int LENGTH = 33;
+
+    public static boolean isBinary(byte[] payload) {
+        return payload.length == LENGTH && payload[0] == MARKER;
+    }
+
+    @Override
+    public byte[] encode(SensorReading reading) {
+        byte[] payload = new byte[LENGTH];
+        ByteBuffer.wrap(payload)
+                .put(MARKER)
+                .putLong(reading.getUuidMostSignificantBits())
+                .putLong(reading.getUuidLeastSignificantBits())
+                .putLong(reading.getEpochMillis())
+                .putDouble(reading.getValue());
+        return payload;
+    }
+
+    @Override
+    public void decode(byte[] payload, SensorReading into) {
+        if (!isBinary(payload)) {
+            throw new IllegalArgumentException("Not a binary sensor reading: " + payload.length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, LENGTH - 1);
+        into.setUuidMostSignificantBits(buffer.getLong());
+        into.setUuidLeastSignificantBits(buffer.getLong());
+        into.setEpochMillis(buffer.getLong());
+        into.setValue(buffer.getDouble());
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import java.util.Arrays;
+
+/**
+ * Optional framing in front of a payload, for metadata MQTT 3.1.1 has no headers for:
+ * <pre>
+ * [0..1]   magic 0x00 0xE7
+ * [2]      flags
+ * [3..10]  origin timestamp, epoch microseconds big-endian, if {@link #TRACED}
+ * [...]    body, {@link PayloadCompressor Deflate-compressed} if {@link #COMPRESSED}; if {@link #BATCH},
+ *          several payloads in the {@link PayloadBatch} layout
+ * </pre>
+ * Neither JSON nor the binary sensor encoding starts with {@code 0x00}, so enveloped and plain
+ * payloads can share a topic. Subscribers strip the envelope as soon as a message arrives.
+ */
+public record Envelope(int flags, long originMicros, byte[] body) {
+
+    public static final int TRACED = 1;
+
+    public static final int COMPRESSED = 2;
+
+    public static final int BATCH = 4;
+
+    private static final int KNOWN_FLAGS = TRACED | COMPRESSED | BATCH;
+
+    private static final byte MAGIC_0 = 0x00;
+
+    private static final byte MAGIC_1 = (byte) 0xE7;
+
+    public static final int HEADER_BYTES = 3;
+
+    public static boolean isEnvelope(byte[] payload) {
+        return payload.length >= HEADER_BYTES && payload[0] == MAGIC_0 && payload[1] == MAGIC_1;
+    }
+
+    /**
+     * @return the body prefixed with an envelope carrying the origin timestamp.
+     */
+    public static byte[] traced(byte[] body, long originMicros) {
+        return wrap(TRACED, originMicros, body);
+    }
+
+    /**
+     * @return the body prefixed with an envelope with the given flags; the origin timestamp is only
+     * written if the flags include {@link #TRACED}.
+     */
+    public static byte[] wrap(int flags, long originMicros, byte[] body) {
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unsupported envelope flags: 0x" + Integer.toHexString(flags));
+        }
+        int position = HEADER_BYTES;
+        byte[] payload = new byte[HEADER_BYTES + ((flags & TRACED) != 0 ? Long.BYTES : 0) + body.length];
+        payload[0] = MAGIC_0;
+        payload[1] = MAGIC_1;
+        payload[2] = (byte) flags;
+        if ((flags & TRACED) != 0) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                payload[position + i] = (byte) (originMicros >>> (56 - 8 * i));
+            }
+            position += Long.BYTES;
+        }
+        System.arraycopy(body, 0, payload, position, body.length);
+        return payload;
+    }
+
+    /**
+     * @return the parsed envelope, or {@code null} if the payload does not start with one.
+     * @throws IllegalArgumentException if the envelope is truncated or uses unknown flags.
+     */
+    public static Envelope parse(byte[] payload) {
+        if (!isEnvelope(payload)) {
+            return null;
+        }
+        int flags = payload[2] & 0xFF;
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unsupported envelope flags: 0x" + Integer.toHexString(flags));
+        }
+        int position = HEADER_BYTES;
+        long originMicros = 0;
+        if ((flags & TRACED) != 0) {
+            if (payload.length < position + Long.BYTES) {
+                throw new IllegalArgumentException("Truncated envelope: " + payload.length + " bytes");
+            }
+            for (int i = 0; i < Long.BYTES; i++) {
+                originMicros = (originMicros << 8) | (payload[position + i] & 0xFF);
+            }
+            position += Long.BYTES;
+        }
+        return new Envelope(flags, originMicros, Arrays.copyOfRange(payload, position, payload.length));
+    }
+
+    public boolean isTraced() {
+        return (flags & TRACED) != 0;
+    }
+
+    public boolean isCompressed() {
+        return (flags & COMPRESSED) != 0;
+    }
+
+    public boolean isBatch() {
+        return (flags & BATCH) != 0;
+    }
+}
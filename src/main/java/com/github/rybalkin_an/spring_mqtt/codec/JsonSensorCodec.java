@@ -0,0 +1,192 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The original JSON format of a reading, {@code {"uuid":"...","timestamp":"yyyy-MM-dd HH:mm:ss","value":12.5}},
+ * written straight into a reusable per-thread buffer. The timestamp text is only re-rendered when the
+ * second changes and values are written with up to six decimals, so encoding allocates nothing but
+ * the returned array.
+ */
+public class JsonSensorCodec implements SensorCodec {
+
+    private static final byte[] UUID_PREFIX = ascii("{\"uuid\":\"");
+    private static final byte[] TIMESTAMP_PREFIX = ascii("\",\"timestamp\":\"");
+    private static final byte[] VALUE_PREFIX = ascii("\",\"value\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+
+    private static final int TIMESTAMP_LENGTH = 19;
+    private static final int FRACTION_DIGITS = 6;
+    private static final long FRACTION_SCALE = 1_000_000L;
+    private static final double MAX_FIXED_POINT = 1e12;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ZoneId zone;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ThreadLocal<Writer> writers = ThreadLocal.withInitial(Writer::new);
+
+    public JsonSensorCodec() {
+        this(ZoneId.systemDefault());
+    }
+
+    public JsonSensorCodec(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public byte[] encode(SensorReading reading) {
+        return writers.get().write(reading);
+    }
+
+    @Override
+    public void decode(byte[] payload, SensorReading into) {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Sensor reading must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "uuid" -> into.setUuid(UUID.fromString(parser.getText()));
+                    case "timestamp" -> into.setEpochMillis(LocalDateTime.parse(parser.getText(), TIMESTAMP_FORMAT)
+                            .atZone(zone).toInstant().toEpochMilli());
+                    case "value" -> into.setValue(parser.getDoubleValue());
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed sensor reading: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private final class Writer {
+
+        private final byte[] buffer = new byte[128];
+        private final byte[] timestamp = new byte[TIMESTAMP_LENGTH];
+        private long timestampSecond = Long.MIN_VALUE;
+
+        byte[] write(SensorReading reading) {
+            int position = put(UUID_PREFIX, 0);
+            position = putUuid(reading.getUuidMostSignificantBits(), reading.getUuidLeastSignificantBits(), position);
+            position = put(TIMESTAMP_PREFIX, position);
+            position = put(timestamp(reading.getEpochMillis()), position);
+            position = put(VALUE_PREFIX, position);
+            position = putValue(reading.getValue(), position);
+            buffer[position++] = '}';
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private int put(byte[] bytes, int position) {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            return position + bytes.length;
+        }
+
+        private int putUuid(long most, long least, int position) {
+            position = putHex(most, 0, 8, position);
+            buffer[position++] = '-';
+            position = putHex(most, 8, 12, position);
+            buffer[position++] = '-';
+            position = putHex(most, 12, 16, position);
+            buffer[position++] = '-';
+            position = putHex(least, 0, 4, position);
+            buffer[position++] = '-';
+            return putHex(least, 4, 16, position);
+        }
+
+        /**
+         * Writes nibbles {@code from} (inclusive) to {@code to} (exclusive), counted from the most significant.
+         */
+        private int putHex(long value, int from, int to, int position) {
+            for (int nibble = from; nibble < to; nibble++) {
+                buffer[position++] = HEX_DIGITS[(int) (value >>> (60 - 4 * nibble)) & 0xF];
+            }
+            return position;
+        }
+
+        private int putValue(double value, int position) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return put(NULL, position);
+            }
+            if (Math.abs(value) >= MAX_FIXED_POINT) {
+                return put(ascii(Double.toString(value)), position);
+            }
+            long scaled = Math.round(Math.abs(value) * FRACTION_SCALE);
+            if (value < 0 && scaled != 0) {
+                buffer[position++] = '-';
+            }
+            position = putDigits(scaled / FRACTION_SCALE, position);
+            buffer[position++] = '.';
+            long fraction = scaled % FRACTION_SCALE;
+            int digits = FRACTION_DIGITS;
+            while (digits > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[position + i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            return position + digits;
+        }
+
+        private int putDigits(long value, int position) {
+            int length = 1;
+            for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+                length++;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                buffer[position + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            return position + length;
+        }
+
+        private byte[] timestamp(long epochMillis) {
+            long second = Math.floorDiv(epochMillis, 1000);
+            if (second != timestampSecond) {
+                Instant instant = Instant.ofEpochSecond(second);
+                LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, zone.getRules().getOffset(instant));
+                putPadded(time.getYear(), 0, 4);
+                timestamp[4] = '-';
+                putPadded(time.getMonthValue(), 5, 2);
+                timestamp[7] = '-';
+                putPadded(time.getDayOfMonth(), 8, 2);
+                timestamp[10] = ' ';
+                putPadded(time.getHour(), 11, 2);
+                timestamp[13] = ':';
+                putPadded(time.getMinute(), 14, 2);
+                timestamp[16] = ':';
+                putPadded(time.getSecond(), 17, 2);
+                timestampSecond = second;
+            }
+            return timestamp;
+        }
+
+        private void putPadded(int value, int offset, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                timestamp[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Body of a {@link Envelope#BATCH} envelope: the payloads back to back, each prefixed with its length
+ * as an MQTT variable byte integer (7 bits per byte, least significant first, high bit set on all but
+ * the last byte), so a reading of up to 127 bytes costs one byte of framing.
+ */
+public final class PayloadBatch {
+
+    private static final int MAX_LENGTH = 268_435_455;
+
+    private PayloadBatch() {
+    }
+
+    public static byte[] encode(List<byte[]> payloads) {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += lengthBytes(payload.length) + payload.length;
+        }
+        byte[] body = new byte[size];
+        int position = 0;
+        for (byte[] payload : payloads) {
+            int length = payload.length;
+            do {
+                int digit = length & 0x7F;
+                length >>>= 7;
+                body[position++] = (byte) (length > 0 ? digit | 0x80 : digit);
+            } while (length > 0);
+            System.arraycopy(payload, 0, body, position, payload.length);
+            position += payload.length;
+        }
+        return body;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a length is malformed or runs past the end of the body.
+     */
+    public static List<byte[]> decode(byte[] body) {
+        List<byte[]> payloads = new ArrayList<>();
+        int position = 0;
+        while (position < body.length) {
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 21 || position == body.length) {
+                    throw new IllegalArgumentException("Malformed batch length at byte " + position);
+                }
+                int digit = body[position++] & 0xFF;
+                length |= (digit & 0x7F) << shift;
+                if ((digit & 0x80) == 0) {
+                    break;
+                }
+            }
+            if (length > body.length - position) {
+                throw new IllegalArgumentException("Truncated batch: " + length + " byte payload at byte " + position
+                        + " of " + body.length);
+            }
+            payloads.add(Arrays.copyOfRange(body, position, position + length));
+            position += length;
+        }
+        return payloads;
+    }
+
+    private static int lengthBytes(int length) {
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Payload too large for a batch: " + length + " bytes");
+        }
+        return length < 1 << 7 ? 1 : length < 1 << 14 ? 2 : length < 1 << 21 ? 3 : 4;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Frames outbound payloads in an {@link Envelope} and strips it from inbound ones. Payloads of topics
+ * matching one of the {@code compression.topics} filters are compressed with {@link PayloadCompressor}
+ * and flagged {@link Envelope#COMPRESSED}, unless that would not make them smaller. Inbound payloads
+ * are inflated whatever their topic, so readers need no configuration.
+ */
+@Component
+public class PayloadCompression {
+
+    @Value("${compression.topics}")
+    private List<String> topics;
+
+    @Value("${compression.level}")
+    private int level;
+
+    @Value("${compression.max-inflated-bytes}")
+    private int maxInflatedBytes;
+
+    private TopicTrie<String> compressedTopics;
+
+    private PayloadCompressor compressor;
+
+    @PostConstruct
+    void init() {
+        compressedTopics = TopicTrie.of(topics);
+        compressor = new PayloadCompressor(level, maxInflatedBytes);
+    }
+
+    public boolean isCompressed(String topic) {
+        return compressedTopics.matchesAny(topic);
+    }
+
+    /**
+     * @param flags        {@link Envelope} flags the payload needs, 0 for none
+     * @param originMicros origin timestamp if the flags include {@link Envelope#TRACED}
+     * @return the payload as published to the topic: unchanged if it needs no envelope and is not compressed.
+     */
+    public byte[] frame(String topic, byte[] payload, int flags, long originMicros) {
+        if (isCompressed(topic)) {
+            byte[] body = compressor.compress(payload);
+            // An otherwise plain payload also has to pay for the envelope header
+            if (body.length + (flags == 0 ? Envelope.HEADER_BYTES : 0) < payload.length) {
+                return Envelope.wrap(flags | Envelope.COMPRESSED, originMicros, body);
+            }
+        }
+        return flags == 0 ? payload : Envelope.wrap(flags, originMicros, payload);
+    }
+
+    /**
+     * @return the envelope's body, inflated if it was compressed.
+     * @throws IllegalArgumentException if the compressed body is malformed or too large.
+     */
+    public byte[] body(Envelope envelope) {
+        return envelope.isCompressed() ? compressor.decompress(envelope.body()) : envelope.body();
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw Deflate with a preset dictionary of the JSON sensor reading, so that even a single small
+ * reading compresses well: its keys, punctuation and most of its timestamp are found in the
+ * dictionary instead of being repeated in every message.
+ * <p>
+ * The dictionary is part of the wire format of {@link Envelope#COMPRESSED} bodies and must never
+ * change; a different one would need a new envelope flag.
+ */
+public class PayloadCompressor {
+
+    // Deflate prefers matches at short distances, so the most common strings come last
+    private static final byte[] DICTIONARY = ("0123456789abcdef-0123456789.0,1,2,3,4,5,6,7,8,9\"},{\"null"
+            + "{\"uuid\":\"00000000-0000-0000-0000-000000000000\",\"timestamp\":\"2025-01-01 00:00:00\",\"value\":"
+            + "{\"uuid\":\"").getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PADDING = new byte[1];
+
+    private final int maxInflatedBytes;
+
+    // Deflater and Inflater hold native buffers that are expensive to allocate per message
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * @param level            Deflate level, 1 (fastest) to 9 (smallest)
+     * @param maxInflatedBytes larger bodies are rejected by {@link #decompress}, so that a small
+     *                         message cannot expand into an arbitrary amount of memory
+     */
+    public PayloadCompressor(int level, int maxInflatedBytes) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be 1 to 9: " + level);
+        }
+        this.maxInflatedBytes = maxInflatedBytes;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    public byte[] compress(byte[] payload) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] buffer = new byte[payload.length + 16];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body is truncated, not compressed with this dictionary,
+     * or inflates to more than the configured maximum.
+     */
+    public byte[] decompress(byte[] body) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(body);
+        byte[] buffer = new byte[(int) Math.min(maxInflatedBytes, Math.max(64L, body.length * 4L))];
+        int length = 0;
+        boolean padded = false;
+        try {
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    if (length >= maxInflatedBytes) {
+                        throw new IllegalArgumentException("Compressed body inflates to more than " + maxInflatedBytes + " bytes");
+                    }
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(maxInflatedBytes, buffer.length * 2L));
+                }
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    if (padded) {
+                        throw new IllegalArgumentException("Truncated compressed body: " + body.length + " bytes");
+                    }
+                    // Raw inflate may need one byte past the end of the stream to notice that it ended
+                    inflater.setInput(PADDING);
+                    padded = true;
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed body: " + e.getMessage(), e);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+
+/**
+ * Wire format of a sensor reading. Implementations are thread-safe.
+ */
+public interface SensorCodec {
+
+    /**
+     * @return a new array holding the encoded reading, ready to be used as an MQTT payload.
+     */
+    byte[] encode(SensorReading reading);
+
+    /**
+     * Decodes the payload into the given reading.
+     * @throws IllegalArgumentException if the payload is not a reading in this format.
+     */
+    void decode(byte[] payload, SensorReading into);
+}
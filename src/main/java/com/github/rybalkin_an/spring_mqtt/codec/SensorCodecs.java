@@ -0,0 +1,52 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Chooses the wire format of sensor readings per topic. Topics matching one of the
+ * {@code sensor.codec.binary-topics} filters use {@link BinarySensorCodec}, all others JSON.
+ * Decoding detects the format from the payload itself, so readers need no configuration.
+ */
+@Component
+public class SensorCodecs {
+
+    private final JsonSensorCodec json = new JsonSensorCodec();
+
+    private final BinarySensorCodec binary = new BinarySensorCodec();
+
+    @Value("${sensor.codec.binary-topics}")
+    private List<String> binaryTopics;
+
+    private TopicTrie<String> binaryTopicFilters;
+
+    @PostConstruct
+    void init() {
+        binaryTopicFilters = TopicTrie.of(binaryTopics);
+    }
+
+    public SensorCodec codecFor(String topic) {
+        return binaryTopicFilters.matchesAny(topic) ? binary : json;
+    }
+
+    public void decode(byte[] payload, SensorReading into) {
+        (BinarySensorCodec.isBinary(payload) ? binary : json).decode(payload, into);
+    }
+
+    /**
+     * @return the payload as JSON: unchanged if it is not a binary reading, re-encoded otherwise.
+     */
+    public byte[] toJson(byte[] payload) {
+        if (!BinarySensorCodec.isBinary(payload)) {
+            return payload;
+        }
+        SensorReading reading = new SensorReading();
+        binary.decode(payload, reading);
+        return json.encode(reading);
+    }
+}
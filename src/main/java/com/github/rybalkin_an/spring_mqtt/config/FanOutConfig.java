@@ -0,0 +1,43 @@
+package com.github.rybalkin_an.spring_mqtt.config;
+
+import com.github.rybalkin_an.spring_mqtt.fanout.FanOutHub;
+import com.github.rybalkin_an.spring_mqtt.fanout.OverflowPolicy;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class FanOutConfig {
+
+    @Value("${fanout.buffer-size}")
+    private int bufferSize;
+
+    @Value("${fanout.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
+    @Getter
+    @Value("${fanout.demand-batch}")
+    private int demandBatch;
+
+    @Value("${fanout.drain-threads}")
+    private int drainThreads;
+
+    @Bean(destroyMethod = "close")
+    public FanOutHub<InboundMessage> fanOutHub() {
+        int threads = drainThreads > 0 ? drainThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fanout-drain-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new FanOutHub<>(bufferSize, overflowPolicy, demandBatch, executor);
+    }
+
+}
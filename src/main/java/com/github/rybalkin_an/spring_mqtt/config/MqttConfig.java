@@ -1,12 +1,25 @@
 package com.github.rybalkin_an.spring_mqtt.config;
 
+import com.github.rybalkin_an.spring_mqtt.broker.EmbeddedBroker;
+import com.github.rybalkin_an.spring_mqtt.connection.Mqtt3Connection;
+import com.github.rybalkin_an.spring_mqtt.connection.Mqtt5Connection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
 import lombok.Getter;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 @Configuration
 public class MqttConfig {
 
@@ -17,6 +30,9 @@ public class MqttConfig {
     @Value("${mqtt.topic}")
     private String topic;
 
+    /**
+     * Base client id; each pooled connection appends its role and index, e.g. {@code mqttSpringClient-pub-0}.
+     */
     @Value("${mqtt.client.id}")
     private String clientId;
 
@@ -24,13 +40,127 @@ public class MqttConfig {
     @Value("${mqtt.qos}")
     private int qos;
 
-    @Bean
-    public MqttClient mqttClient() throws Exception {
-        MqttClient mqttClient = new MqttClient(brokerUrl, clientId);
+    /**
+     * Maximum number of QoS 1/2 publishes awaiting acknowledgement on each connection.
+     */
+    @Getter
+    @Value("${mqtt.max-inflight}")
+    private int maxInflight;
+
+    @Value("${mqtt.keep-alive-seconds}")
+    private int keepAliveSeconds;
+
+    @Value("${mqtt.connection-timeout-seconds}")
+    private int connectionTimeoutSeconds;
+
+    /**
+     * With {@code false} the broker keeps subscriptions and queued QoS 1/2 messages across reconnects.
+     */
+    @Value("${mqtt.clean-session}")
+    private boolean cleanSession;
+
+    /**
+     * Protocol of all pooled connections: 3 for MQTT 3.1.1, or 5.
+     */
+    @Value("${mqtt.version}")
+    private int version;
+
+    @Value("${mqtt.v5.receive-maximum}")
+    private int receiveMaximum;
+
+    @Value("${mqtt.v5.topic-alias-maximum}")
+    private int topicAliasMaximum;
+
+    /**
+     * {@code key=value} pairs sent with the MQTT 5 CONNECT and every publish.
+     */
+    @Value("${mqtt.v5.user-properties}")
+    private List<String> userProperties;
+
+    @Value("${mqtt.pool.publishers}")
+    private int publisherConnections;
+
+    @Value("${mqtt.pool.subscribers}")
+    private int subscriberConnections;
+
+    /**
+     * Started before the connection pool, and stopped after it, when {@code mqtt.embedded.enabled} is set.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "mqtt.embedded.enabled", havingValue = "true")
+    public EmbeddedBroker embeddedBroker(@Value("${mqtt.embedded.host}") String host,
+                                         @Value("${mqtt.embedded.port}") int port) {
+        return new EmbeddedBroker(host, port);
+    }
+
+    /**
+     * Connects to the embedded broker if there is one, to {@code mqtt.broker.url} otherwise.
+     * Connections are established by the {@link com.github.rybalkin_an.spring_mqtt.service.ConnectionSupervisor},
+     * which also keeps them connected.
+     */
+    @Bean(destroyMethod = "close")
+    public MqttConnectionPool mqttConnectionPool(Optional<EmbeddedBroker> embeddedBroker) throws MqttException {
+        String url = embeddedBroker.map(EmbeddedBroker::getUrl).orElse(brokerUrl);
+        return new MqttConnectionPool(
+                createConnections(url, "pub", publisherConnections),
+                createConnections(url, "sub", subscriberConnections));
+    }
+
+    private List<MqttConnection> createConnections(String url, String role, int count) throws MqttException {
+        if (version != 3 && version != 5) {
+            throw new IllegalArgumentException("Unsupported MQTT version: " + version);
+        }
+        List<MqttConnection> connections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String connectionClientId = clientId + "-" + role + "-" + i;
+            connections.add(version == 5
+                    ? new Mqtt5Connection(url, connectionClientId, connectOptionsV5(), maxInflight, parseUserProperties())
+                    : new Mqtt3Connection(new MqttAsyncClient(url, connectionClientId), connectOptions()));
+        }
+        return connections;
+    }
+
+    private MqttConnectOptions connectOptions() {
         MqttConnectOptions options = new MqttConnectOptions();
-        options.setCleanSession(true);
-        mqttClient.connect(options);
-        return mqttClient;
+        options.setCleanSession(cleanSession);
+        options.setKeepAliveInterval(keepAliveSeconds);
+        options.setConnectionTimeout(connectionTimeoutSeconds);
+        // Reconnects are handled by the supervisor, which also restores subscriptions
+        options.setAutomaticReconnect(false);
+        options.setMaxInflight(maxInflight);
+        return options;
+    }
+
+    private MqttConnectionOptions connectOptionsV5() {
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setCleanStart(cleanSession);
+        // Like a 3.1.1 persistent session, keep it until the client comes back
+        options.setSessionExpiryInterval(cleanSession ? 0L : 0xFFFFFFFFL);
+        options.setKeepAliveInterval(keepAliveSeconds);
+        options.setConnectionTimeout(connectionTimeoutSeconds);
+        options.setAutomaticReconnect(false);
+        options.setReceiveMaximum(receiveMaximum);
+        options.setTopicAliasMaximum(topicAliasMaximum);
+        List<UserProperty> properties = parseUserProperties();
+        if (!properties.isEmpty()) {
+            options.setUserProperties(properties);
+        }
+        return options;
+    }
+
+    private List<UserProperty> parseUserProperties() {
+        List<UserProperty> properties = new ArrayList<>();
+        for (String property : userProperties) {
+            if (property.isBlank()) {
+                continue;
+            }
+            int separator = property.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("User property must be key=value: " + property);
+            }
+            properties.add(new UserProperty(property.substring(0, separator).strip(), property.substring(separator + 1).strip()));
+        }
+        return properties;
     }
 
 }
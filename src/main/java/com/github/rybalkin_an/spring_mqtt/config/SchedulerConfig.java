@@ -0,0 +1,26 @@
+package com.github.rybalkin_an.spring_mqtt.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class SchedulerConfig {
+
+    @Value("${mqtt.blocking.threads}")
+    private int threads;
+
+    @Value("${mqtt.blocking.queue-size}")
+    private int queueSize;
+
+    /**
+     * Runs the Paho calls that wait for the broker (subscribe, unsubscribe, connect, disconnect), so
+     * that they never block a Netty event loop. Tasks beyond the queue size are rejected.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler mqttBlockingScheduler() {
+        return Schedulers.newBoundedElastic(threads, queueSize, "mqtt-blocking", 60, true);
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.rybalkin_an.spring_mqtt.config;
+
+import com.github.rybalkin_an.spring_mqtt.websocket.MqttWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.util.Map;
+
+@Configuration
+public class WebSocketConfig implements WebFluxConfigurer {
+
+    @Value("${websocket.compression.enabled}")
+    private boolean compressionEnabled;
+
+    @Bean
+    public HandlerMapping webSocketMapping(MqttWebSocketHandler mqttWebSocketHandler) {
+        // Ahead of the annotated controllers
+        return new SimpleUrlHandlerMapping(Map.of("/mqtt/ws", mqttWebSocketHandler), -1);
+    }
+
+    @Override
+    public WebSocketService getWebSocketService() {
+        // permessage-deflate is only used if the client offers it in the handshake
+        return new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy(
+                () -> WebsocketServerSpec.builder().compress(compressionEnabled)));
+    }
+}
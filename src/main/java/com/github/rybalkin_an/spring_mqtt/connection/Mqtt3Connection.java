@@ -0,0 +1,110 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * MQTT 3.1.1 connection over the Paho v3 client.
+ */
+public class Mqtt3Connection extends PipelinedConnection {
+
+    private final MqttAsyncClient client;
+    private final MqttConnectOptions options;
+
+    public Mqtt3Connection(MqttAsyncClient client, MqttConnectOptions options) {
+        super(options.getMaxInflight());
+        this.client = client;
+        this.options = options;
+        client.setCallback(new Callback());
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void connect() throws MqttException {
+        client.connect(options).waitForCompletion();
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        client.disconnect().waitForCompletion();
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos) throws MqttException {
+        client.subscribe(topicFilter, qos).waitForCompletion();
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) throws MqttException {
+        client.unsubscribe(topicFilter).waitForCompletion();
+    }
+
+    @Override
+    public void close() throws MqttException {
+        if (client.isConnected()) {
+            client.disconnect().waitForCompletion();
+        }
+        client.close();
+    }
+
+    @Override
+    PendingPublish newPublish(String topic, byte[] payload, int qos) {
+        return new Publish(topic, payload, qos);
+    }
+
+    private final class Callback implements MqttCallback {
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            Mqtt3Connection.this.connectionLost(cause);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            Mqtt3Connection.this.messageArrived(topic, message.getPayload(), message.isDuplicate());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+
+    private final class Publish extends PendingPublish implements IMqttActionListener {
+
+        Publish(String topic, byte[] payload, int qos) {
+            super(topic, payload, qos);
+        }
+
+        @Override
+        void send() throws MqttException {
+            MqttMessage message = new MqttMessage(payload);
+            message.setQos(qos);
+            client.publish(topic, message, null, this);
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            succeeded();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            failed(exception);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.util.List;
+
+/**
+ * MQTT 5 connection over the Paho v5 client. Beyond 3.1.1 it gives:
+ * <ul>
+ *     <li>flow control: the broker sends at most {@code receiveMaximum} unacknowledged messages, and
+ *     publishes are pipelined only up to the broker's own receive maximum;</li>
+ *     <li>topic aliases: Paho replaces repeated topic names with aliases, up to the broker's limit;</li>
+ *     <li>user properties, sent with every publish.</li>
+ * </ul>
+ * Errors of the v5 client are rethrown as v3 {@link MqttException}s with the same reason code.
+ */
+public class Mqtt5Connection extends PipelinedConnection {
+
+    private final MqttAsyncClient client;
+    private final MqttConnectionOptions options;
+    private final int maxInflight;
+    private final List<UserProperty> userProperties;
+
+    /**
+     * @param userProperties added to every publish, may be empty
+     */
+    public Mqtt5Connection(String serverUri, String clientId, MqttConnectionOptions options, int maxInflight,
+                           List<UserProperty> userProperties) throws MqttException {
+        super(maxInflight);
+        try {
+            this.client = new MqttAsyncClient(serverUri, clientId);
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+        this.options = options;
+        this.maxInflight = maxInflight;
+        this.userProperties = List.copyOf(userProperties);
+        client.setCallback(new Callback());
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void connect() throws MqttException {
+        try {
+            IMqttToken token = client.connect(options);
+            token.waitForCompletion();
+            MqttProperties connack = token.getResponseProperties();
+            Integer brokerReceiveMaximum = connack != null ? connack.getReceiveMaximum() : null;
+            setMaxInflight(brokerReceiveMaximum != null ? Math.min(maxInflight, brokerReceiveMaximum) : maxInflight);
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        try {
+            client.disconnect().waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos) throws MqttException {
+        try {
+            client.subscribe(topicFilter, qos).waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) throws MqttException {
+        try {
+            client.unsubscribe(topicFilter).waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void close() throws MqttException {
+        try {
+            if (client.isConnected()) {
+                client.disconnect().waitForCompletion();
+            }
+            client.close();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    PendingPublish newPublish(String topic, byte[] payload, int qos) {
+        return new Publish(topic, payload, qos);
+    }
+
+    private static MqttException wrap(Throwable error) {
+        if (error instanceof org.eclipse.paho.mqttv5.common.MqttException v5) {
+            return new WrappedException(v5);
+        }
+        return error instanceof MqttException v3 ? v3 : new MqttException(error);
+    }
+
+    /**
+     * Keeps the message of the v5 exception, whose reason codes the v3 message catalog may not know.
+     */
+    private static final class WrappedException extends MqttException {
+
+        WrappedException(org.eclipse.paho.mqttv5.common.MqttException cause) {
+            super(cause.getReasonCode(), cause);
+        }
+
+        @Override
+        public String getMessage() {
+            return getCause().getMessage();
+        }
+    }
+
+    private final class Callback implements MqttCallback {
+
+        @Override
+        public void disconnected(MqttDisconnectResponse response) {
+            Throwable cause = response.getException();
+            connectionLost(cause != null ? wrap(cause)
+                    : new MqttException(MqttException.REASON_CODE_CONNECTION_LOST, new IllegalStateException(
+                    "Disconnected by broker: " + response.getReasonString())));
+        }
+
+        @Override
+        public void mqttErrorOccurred(org.eclipse.paho.mqttv5.common.MqttException exception) {
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            Mqtt5Connection.this.messageArrived(topic, message.getPayload(), message.isDuplicate());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttToken token) {
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverUri) {
+        }
+
+        @Override
+        public void authPacketArrived(int reasonCode, MqttProperties properties) {
+        }
+    }
+
+    private final class Publish extends PendingPublish implements MqttActionListener {
+
+        Publish(String topic, byte[] payload, int qos) {
+            super(topic, payload, qos);
+        }
+
+        @Override
+        void send() throws MqttException {
+            MqttMessage message = new MqttMessage(payload);
+            message.setQos(qos);
+            if (!userProperties.isEmpty()) {
+                // Per message: Paho writes the assigned topic alias into the message's properties
+                MqttProperties properties = new MqttProperties();
+                properties.setUserProperties(userProperties);
+                message.setProperties(properties);
+            }
+            try {
+                client.publish(topic, message, null, this);
+            } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+                throw wrap(e);
+            }
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            succeeded();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            failed(wrap(exception));
+        }
+    }
+}
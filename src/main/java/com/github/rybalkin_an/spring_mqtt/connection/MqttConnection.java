@@ -0,0 +1,94 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One broker connection of the {@link MqttConnectionPool}, whichever MQTT version it speaks.
+ * Failures are reported as {@link MqttException}s with the reason codes of the Paho v3 client for
+ * both versions, so callers handle them alike.
+ */
+public interface MqttConnection {
+
+    String getClientId();
+
+    boolean isConnected();
+
+    /**
+     * @return publishes sent and not yet acknowledged by the broker.
+     */
+    int getInflightCount();
+
+    void setMessageListener(MessageListener listener);
+
+    /**
+     * Notified when the connection drops unexpectedly.
+     */
+    void setConnectionLostListener(Consumer<Throwable> listener);
+
+    void connect() throws MqttException;
+
+    void disconnect() throws MqttException;
+
+    /**
+     * @param topicFilter a topic filter, or a shared subscription {@code $share/<group>/<filter>}
+     */
+    void subscribe(String topicFilter, int qos) throws MqttException;
+
+    void unsubscribe(String topicFilter) throws MqttException;
+
+    void close() throws MqttException;
+
+    /**
+     * Publishes the payload as-is, without copying it.
+     * @return a future completed once the broker has acknowledged the message according to its QoS.
+     */
+    CompletableFuture<Void> publish(String topic, byte[] payload, int qos);
+
+    /**
+     * Checks what Paho would otherwise reject while sending, after the message has been queued.
+     * @throws IllegalArgumentException if the QoS is not 0, 1 or 2, or the topic is not a valid topic
+     * name, e.g. empty, longer than 65535 bytes or containing wildcards.
+     */
+    static void validatePublish(String topic, int qos) {
+        if (qos < 0 || qos > 2) {
+            throw new IllegalArgumentException("QoS must be 0, 1 or 2: " + qos);
+        }
+        if (topic == null || topic.isEmpty()) {
+            throw new IllegalArgumentException("Topic must not be empty");
+        }
+        MqttTopic.validate(topic, false);
+    }
+
+    /**
+     * @return {@code true} if the publish failed because the connection is down, as opposed to the
+     * message itself being rejected.
+     */
+    static boolean isConnectionFailure(Throwable error) {
+        if (!(error instanceof MqttException mqttException)) {
+            return false;
+        }
+        return switch (mqttException.getReasonCode()) {
+            case MqttException.REASON_CODE_CLIENT_NOT_CONNECTED,
+                 MqttException.REASON_CODE_CONNECTION_LOST,
+                 MqttException.REASON_CODE_CLIENT_DISCONNECTING,
+                 MqttException.REASON_CODE_CONNECT_IN_PROGRESS,
+                 MqttException.REASON_CODE_CLIENT_CLOSED,
+                 MqttException.REASON_CODE_CLIENT_TIMEOUT,
+                 MqttException.REASON_CODE_WRITE_TIMEOUT -> true;
+            default -> false;
+        };
+    }
+
+    @FunctionalInterface
+    interface MessageListener {
+
+        /**
+         * @param duplicate the DUP flag: the broker is redelivering a message it may have delivered before.
+         */
+        void messageArrived(String topic, byte[] payload, boolean duplicate);
+    }
+}
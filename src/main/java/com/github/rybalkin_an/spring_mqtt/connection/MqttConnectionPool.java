@@ -0,0 +1,90 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed set of broker connections. Publish traffic is spread over the publisher connections by
+ * topic hash, so all messages of one topic use the same connection. Each connection sends its
+ * publishes in the order they were made (see {@link PipelinedConnection}), so a topic's messages
+ * keep their order as long as they are published from one thread.
+ * Subscriptions live on dedicated subscriber connections, sharded by topic filter, so inbound
+ * traffic never shares a socket or a Paho comms thread with outbound traffic.
+ */
+public class MqttConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttConnectionPool.class);
+
+    private final List<MqttConnection> publishers;
+    private final List<MqttConnection> subscribers;
+
+    public MqttConnectionPool(List<MqttConnection> publishers, List<MqttConnection> subscribers) {
+        if (publishers.isEmpty() || subscribers.isEmpty()) {
+            throw new IllegalArgumentException("Connection pool needs at least one publisher and one subscriber connection");
+        }
+        this.publishers = List.copyOf(publishers);
+        this.subscribers = List.copyOf(subscribers);
+    }
+
+    public MqttConnection forPublish(String topic) {
+        return publishers.get(Math.floorMod(topic.hashCode(), publishers.size()));
+    }
+
+    public MqttConnection forSubscription(String topicFilter) {
+        return subscribers.get(Math.floorMod(topicFilter.hashCode(), subscribers.size()));
+    }
+
+    public List<MqttConnection> getPublishers() {
+        return publishers;
+    }
+
+    public List<MqttConnection> getSubscribers() {
+        return subscribers;
+    }
+
+    public List<MqttConnection> getConnections() {
+        List<MqttConnection> connections = new ArrayList<>(publishers);
+        connections.addAll(subscribers);
+        return connections;
+    }
+
+    public boolean isConnected() {
+        return getConnections().stream().allMatch(MqttConnection::isConnected);
+    }
+
+    /**
+     * Connects every connection that is not connected yet.
+     */
+    public void connect() throws MqttException {
+        for (MqttConnection connection : getConnections()) {
+            if (!connection.isConnected()) {
+                connection.connect();
+                logger.info("MQTT connection {} connected.", connection.getClientId());
+            }
+        }
+    }
+
+    public void disconnect() throws MqttException {
+        for (MqttConnection connection : getConnections()) {
+            if (connection.isConnected()) {
+                connection.disconnect();
+                logger.info("MQTT connection {} disconnected.", connection.getClientId());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (MqttConnection connection : getConnections()) {
+            try {
+                connection.close();
+            } catch (MqttException e) {
+                logger.warn("Failed to close MQTT connection {}: {}", connection.getClientId(), e.getMessage());
+            }
+        }
+    }
+}
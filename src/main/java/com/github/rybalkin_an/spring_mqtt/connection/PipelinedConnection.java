@@ -0,0 +1,140 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Publishes are pipelined over the connection up to {@code maxInflight} unacknowledged messages;
+ * anything beyond that waits in a queue and is sent as acknowledgements come back.
+ */
+abstract class PipelinedConnection implements MqttConnection {
+
+    private final Queue<PendingPublish> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile int maxInflight;
+    private volatile MessageListener messageListener;
+    private volatile Consumer<Throwable> connectionLostListener;
+
+    PipelinedConnection(int maxInflight) {
+        this.maxInflight = maxInflight;
+    }
+
+    @Override
+    public int getInflightCount() {
+        return inflight.get();
+    }
+
+    @Override
+    public void setMessageListener(MessageListener listener) {
+        this.messageListener = listener;
+    }
+
+    @Override
+    public void setConnectionLostListener(Consumer<Throwable> listener) {
+        this.connectionLostListener = listener;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, byte[] payload, int qos) {
+        try {
+            MqttConnection.validatePublish(topic, qos);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        PendingPublish publish = newPublish(topic, payload, qos);
+        pending.add(publish);
+        dispatch();
+        return publish.future;
+    }
+
+    abstract PendingPublish newPublish(String topic, byte[] payload, int qos);
+
+    /**
+     * Lowers or raises the pipelining limit, e.g. to what the broker accepts.
+     */
+    void setMaxInflight(int maxInflight) {
+        this.maxInflight = maxInflight;
+        dispatch();
+    }
+
+    void messageArrived(String topic, byte[] payload, boolean duplicate) {
+        MessageListener listener = messageListener;
+        if (listener != null) {
+            listener.messageArrived(topic, payload, duplicate);
+        }
+    }
+
+    void connectionLost(Throwable cause) {
+        Consumer<Throwable> listener = connectionLostListener;
+        if (listener != null) {
+            listener.accept(cause);
+        }
+    }
+
+    /**
+     * Sends queued publishes while there is room in the pipeline. Called from publishing threads and
+     * from acknowledgement callbacks alike, but only one thread drains at a time, so that messages go
+     * out in the order they were queued; the others just make it go round again.
+     */
+    private void dispatch() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (inflight.get() < maxInflight) {
+                PendingPublish publish = pending.poll();
+                if (publish == null) {
+                    break;
+                }
+                inflight.incrementAndGet();
+                try {
+                    publish.send();
+                } catch (MqttException | RuntimeException e) {
+                    // Must not escape: the drain would stay claimed and nothing would be sent again
+                    inflight.decrementAndGet();
+                    publish.future.completeExceptionally(e);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    abstract class PendingPublish {
+
+        final String topic;
+        final byte[] payload;
+        final int qos;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingPublish(String topic, byte[] payload, int qos) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+        }
+
+        /**
+         * Hands the message to the client, which calls back {@link #succeeded()} or {@link #failed(Throwable)}.
+         */
+        abstract void send() throws MqttException;
+
+        void succeeded() {
+            inflight.decrementAndGet();
+            future.complete(null);
+            dispatch();
+        }
+
+        void failed(Throwable error) {
+            inflight.decrementAndGet();
+            future.completeExceptionally(error);
+            dispatch();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.rybalkin_an.spring_mqtt.controller;
+
+import com.github.rybalkin_an.spring_mqtt.aggregation.SensorAggregator;
+import com.github.rybalkin_an.spring_mqtt.model.AggregateSnapshot;
+import com.github.rybalkin_an.spring_mqtt.model.WindowKind;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/aggregates")
+public class AggregationController {
+
+    // Lets a tumbling window close and its last readings arrive before it is reported
+    private static final long TUMBLING_GRACE_MILLIS = 50;
+
+    @Autowired
+    private SensorAggregator sensorAggregator;
+
+    @GetMapping
+    public ResponseEntity<?> getAggregates(
+            @RequestParam(defaultValue = "1m") String window,
+            @RequestParam(defaultValue = "SLIDING") WindowKind kind) {
+        try {
+            return ResponseEntity.ok(sensorAggregator.snapshot(DurationStyle.detectAndParse(window), kind));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{uuid}")
+    public ResponseEntity<List<AggregateSnapshot>> getSensorAggregates(@PathVariable UUID uuid) {
+        List<AggregateSnapshot> snapshots = sensorAggregator.snapshot(uuid);
+        return snapshots.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(snapshots);
+    }
+
+    /**
+     * Emits the aggregates of all sensors for one window: tumbling windows once each time a window
+     * closes, sliding windows every {@code periodMs}, by default once per slot. An invalid window or a
+     * {@code periodMs} that is not positive is rejected with 400 before the stream starts.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<List<AggregateSnapshot>> streamAggregates(
+            @RequestParam(defaultValue = "1m") String window,
+            @RequestParam(defaultValue = "TUMBLING") WindowKind kind,
+            @RequestParam(required = false) Long periodMs) {
+        Duration length;
+        try {
+            if (periodMs != null && periodMs <= 0) {
+                throw new IllegalArgumentException("periodMs must be positive.");
+            }
+            length = DurationStyle.detectAndParse(window);
+            sensorAggregator.snapshot(length, kind);
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        Flux<Long> ticks;
+        if (periodMs != null) {
+            ticks = Flux.interval(Duration.ofMillis(periodMs));
+        } else if (kind == WindowKind.TUMBLING) {
+            long windowMillis = length.toMillis();
+            long untilClose = windowMillis - Math.floorMod(System.currentTimeMillis(), windowMillis);
+            ticks = Flux.interval(Duration.ofMillis(untilClose + TUMBLING_GRACE_MILLIS), length);
+        } else {
+            ticks = Flux.interval(sensorAggregator.slotLength(length));
+        }
+        return ticks.map(tick -> sensorAggregator.snapshot(length, kind))
+                .filter(snapshots -> !snapshots.isEmpty());
+    }
+}
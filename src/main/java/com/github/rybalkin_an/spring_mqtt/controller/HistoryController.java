@@ -0,0 +1,90 @@
+package com.github.rybalkin_an.spring_mqtt.controller;
+
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
+import com.github.rybalkin_an.spring_mqtt.model.HistoryMessage;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.SeriesSlice;
+import com.github.rybalkin_an.spring_mqtt.store.MessageStore;
+import com.github.rybalkin_an.spring_mqtt.store.SensorHistoryStore;
+import com.github.rybalkin_an.spring_mqtt.store.StoredMessage;
+import com.github.rybalkin_an.spring_mqtt.stream.PayloadEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/history")
+public class HistoryController {
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private SensorHistoryStore sensorHistoryStore;
+
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    @GetMapping("/latest")
+    public ResponseEntity<?> getLatest(
+            @RequestParam String topic,
+            @RequestParam(defaultValue = "UTF8") PayloadEncoding encoding) {
+        try {
+            return ResponseEntity.ok(toHistory(messageStore.latest(topic), encoding));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/messages")
+    public ResponseEntity<?> getMessages(
+            @RequestParam String topic,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "UTF8") PayloadEncoding encoding) {
+        try {
+            return ResponseEntity.ok(toHistory(messageStore.recent(topic, limit), encoding));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * The newest {@code limit} readings of a sensor, or those with {@code from <= epochMillis < to} if
+     * either bound is given.
+     */
+    @GetMapping("/sensors/{uuid}")
+    public ResponseEntity<SeriesSlice> getSensorHistory(
+            @PathVariable UUID uuid,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to) {
+        SeriesSlice slice = from == null && to == null
+                ? sensorHistoryStore.last(uuid, limit)
+                : sensorHistoryStore.range(uuid, from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to);
+        return slice == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(slice);
+    }
+
+    @GetMapping("/sensors/{uuid}/latest")
+    public ResponseEntity<SeriesSlice> getSensorLatest(@PathVariable UUID uuid) {
+        return getSensorHistory(uuid, 1, null, null);
+    }
+
+    private List<HistoryMessage> toHistory(List<StoredMessage> messages, PayloadEncoding encoding) {
+        return messages.stream()
+                .map(stored -> {
+                    InboundMessage message = stored.message();
+                    if (encoding == PayloadEncoding.UTF8) {
+                        message = new InboundMessage(message.topic(), sensorCodecs.toJson(message.payload()));
+                    }
+                    return new HistoryMessage(message.topic(), stored.receivedAt(), encoding.encode(message));
+                })
+                .toList();
+    }
+}
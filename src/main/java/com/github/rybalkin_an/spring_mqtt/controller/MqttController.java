@@ -1,19 +1,54 @@
 package com.github.rybalkin_an.spring_mqtt.controller;
 
-import com.github.rybalkin_an.spring_mqtt.service.MqttMessageSubscriber;
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
+import com.github.rybalkin_an.spring_mqtt.config.FanOutConfig;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.metrics.MqttMetrics;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionHealth;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.OutboxStats;
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import com.github.rybalkin_an.spring_mqtt.model.PublishRequest;
+import com.github.rybalkin_an.spring_mqtt.model.PublishResult;
+import com.github.rybalkin_an.spring_mqtt.model.TraceReport;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import com.github.rybalkin_an.spring_mqtt.service.ConnectionSupervisor;
 import com.github.rybalkin_an.spring_mqtt.service.MqttPublisher;
 import com.github.rybalkin_an.spring_mqtt.service.MqttSubscriber;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttException;
+import com.github.rybalkin_an.spring_mqtt.store.MessageStore;
+import com.github.rybalkin_an.spring_mqtt.store.StoredMessage;
+import com.github.rybalkin_an.spring_mqtt.stream.MessageFrames;
+import com.github.rybalkin_an.spring_mqtt.stream.PayloadEncoding;
+import com.github.rybalkin_an.spring_mqtt.stream.StreamMode;
+import com.github.rybalkin_an.spring_mqtt.stream.StreamShaper;
+import com.github.rybalkin_an.spring_mqtt.tracing.LatencyTracker;
+import com.github.rybalkin_an.spring_mqtt.wal.Outbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/mqtt")
@@ -28,79 +63,249 @@ public class MqttController {
     private MqttPublisher mqttPublisher;
 
     @Autowired
-    private MqttClient mqttClient;
+    private MqttConnectionPool connectionPool;
+
+    @Autowired
+    private ConnectionSupervisor connectionSupervisor;
+
+    @Autowired
+    private FanOutConfig fanOutConfig;
+
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private MqttMetrics metrics;
+
+    @Autowired
+    private LatencyTracker latencyTracker;
+
+    @Autowired
+    private Scheduler mqttBlockingScheduler;
 
     @PostMapping("/message")
-    public ResponseEntity<String> publishMessage(
+    public Mono<ResponseEntity<String>> publishMessage(
             @RequestParam String message,
             @RequestParam String topic,
+            @RequestParam(defaultValue = "1") int qos,
+            @RequestParam(defaultValue = "false") boolean trace) {
+        try {
+            MqttConnection.validatePublish(topic, qos);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return mqttPublisher.publishReactive(message, topic, qos, trace)
+                .map(outcome -> outcome == PublishOutcome.BUFFERED
+                        ? ResponseEntity.accepted().body("Message buffered for topic '" + topic + "': " + message)
+                        : ResponseEntity.ok("Message published to topic '" + topic + "': " + message))
+                .onErrorResume(e -> {
+                    logger.error("Error publishing message: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(500).body("Error publishing message: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * Bulk publish. The body is either a JSON array or newline-delimited JSON of
+     * {@code {"topic": ..., "qos": ..., "payload": ...}} records; records are published while the body
+     * is still being read.
+     */
+    @PostMapping(value = "/messages", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<List<PublishResult>>> publishMessages(
+            @RequestBody Flux<PublishRequest> body,
             @RequestParam(defaultValue = "1") int qos) {
+        return mqttPublisher.publishAll(body, qos)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ServerWebInputException.class, e -> {
+                    logger.error("Malformed bulk publish body: {}", e.getReason());
+                    return Mono.just(ResponseEntity.badRequest().build());
+                });
+    }
+
+    /**
+     * Publishes the request body as-is, for binary payloads.
+     */
+    @PostMapping(value = "/message/raw", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<ResponseEntity<String>> publishRawMessage(
+            @RequestBody byte[] payload,
+            @RequestParam String topic,
+            @RequestParam(defaultValue = "1") int qos,
+            @RequestParam(defaultValue = "false") boolean trace) {
         try {
-            mqttPublisher.publish(message, topic, qos);
-            return ResponseEntity.ok("Message published to topic '" + topic + "': " + message);
-        } catch (Exception e) {
-            logger.error("Error publishing message: {}", e.getMessage(), e);
-            return ResponseEntity.status(500).body("Error publishing message: " + e.getMessage());
+            MqttConnection.validatePublish(topic, qos);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
         }
+        return mqttPublisher.publishReactive(payload, topic, qos, trace)
+                .map(outcome -> outcome == PublishOutcome.BUFFERED
+                        ? ResponseEntity.accepted().body("Message buffered for topic '" + topic + "': " + payload.length + " bytes")
+                        : ResponseEntity.ok("Message published to topic '" + topic + "': " + payload.length + " bytes"))
+                .onErrorResume(e -> {
+                    logger.error("Error publishing message: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(500).body("Error publishing message: " + e.getMessage()));
+                });
     }
 
     @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<Object> streamMessages(@RequestParam String topic, @RequestParam int qos) {
-        try {
-            mqttSubscriber.subscribe(topic, qos);
-        } catch (Exception e) {
-            logger.error("Failed to subscribe to topic {} with QoS {}: {}", topic, qos, e.getMessage());
-            return Flux.error(new RuntimeException("Subscription failed: " + e.getMessage()));
+    public Flux<String> streamMessages(
+            @RequestParam String topic,
+            @RequestParam int qos,
+            @RequestParam(defaultValue = "PASSTHROUGH") StreamMode mode,
+            @RequestParam(defaultValue = "1000") long windowMs,
+            @RequestParam(defaultValue = "100") int batchSize,
+            @RequestParam(defaultValue = "UTF8") PayloadEncoding encoding,
+            @RequestParam(defaultValue = "0") int replay) {
+        if (windowMs <= 0 || batchSize <= 0) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "windowMs and batchSize must be positive."));
         }
-        return Flux.create(sink -> {
-            try {
-                mqttSubscriber.subscribeToMessages(new MqttMessageSubscriber(sink::next));
-            } catch (Exception e) {
-                logger.error("Error while subscribing to messages from topic {}: {}", topic, e.getMessage());
-                sink.error(new RuntimeException("Error subscribing to messages: " + e.getMessage()));
+        return withSubscription(topic, qos, () -> {
+            Flux<InboundMessage> messages = replay > 0 ? inboundMessagesWithHistory(topic, replay) : inboundMessages(topic);
+            if (encoding == PayloadEncoding.UTF8) {
+                messages = messages.map(message -> message.withPayload(sensorCodecs.toJson(message.payload())));
             }
-        }).delayElements(Duration.ofMillis(100));
+            return StreamShaper.shape(messages, mode, Duration.ofMillis(windowMs), batchSize, encoding, latencyTracker::recordEgress);
+        });
     }
 
-    @PostMapping("/disconnect")
-    public ResponseEntity<String> disconnect() {
+    /**
+     * Binary-safe stream of raw payloads, one {@link MessageFrames} frame per message: a 2-byte topic
+     * length, the UTF-8 topic, a 4-byte payload length and the payload bytes, all lengths big-endian.
+     */
+    @GetMapping(value = "/subscribe/raw", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Flux<byte[]> streamRawMessages(@RequestParam String topic, @RequestParam int qos) {
+        return withSubscription(topic, qos, () -> inboundMessages(topic)
+                .doOnNext(latencyTracker::recordEgress)
+                .map(MessageFrames::encode));
+    }
+
+    /**
+     * Registers the stream's topic filter before streaming and releases it when the stream ends. Both
+     * wait for the broker, so they run on the blocking scheduler rather than the request thread. The
+     * stream is assembled inside the release, so that failing to assemble it releases the filter too.
+     */
+    private <T> Flux<T> withSubscription(String topic, int qos, Supplier<Flux<T>> stream) {
+        return Mono.fromCallable(() -> {
+                    mqttSubscriber.subscribe(topic, qos);
+                    return topic;
+                })
+                .subscribeOn(mqttBlockingScheduler)
+                .onErrorMap(e -> {
+                    logger.error("Failed to subscribe to topic {} with QoS {}: {}", topic, qos, e.getMessage());
+                    return new RuntimeException("Subscription failed: " + e.getMessage());
+                })
+                .flatMapMany(subscribed -> Flux.defer(stream)
+                        .doOnSubscribe(subscription -> metrics.streamOpened())
+                        .doFinally(signal -> {
+                            metrics.streamClosed();
+                            unsubscribeLater(topic);
+                        }));
+    }
+
+    private void unsubscribeLater(String topic) {
         try {
-            mqttClient.disconnect();
-            logger.info("MQTT client disconnected successfully.");
-            return ResponseEntity.ok("MQTT client disconnected.");
-        } catch (MqttException e) {
-            logger.error("Error while disconnecting MQTT client: {}", e.getMessage());
-            return ResponseEntity.internalServerError().body("Failed to disconnect MQTT client.");
+            mqttBlockingScheduler.schedule(() -> mqttSubscriber.unsubscribe(topic));
+        } catch (RejectedExecutionException e) {
+            mqttSubscriber.unsubscribe(topic);
         }
     }
 
-    @PostMapping("/reconnect")
-    public ResponseEntity<String> reconnect() {
-        try {
-            if (mqttClient == null) {
-                logger.error("MQTT client is not initialized.");
-                return ResponseEntity.status(500).body("MQTT client is not initialized.");
-            }
+    private Flux<InboundMessage> inboundMessages(String topic) {
+        Flow.Publisher<InboundMessage> messages = subscriber -> mqttSubscriber.subscribeToMessages(topic, subscriber);
+        return JdkFlowAdapter.flowPublisherToFlux(messages)
+                .limitRate(fanOutConfig.getDemandBatch())
+                .doOnNext(latencyTracker::recordDequeued);
+    }
 
-            if (!mqttClient.isConnected()) {
-                mqttClient.connect();
+    /**
+     * Live messages preceded by up to {@code limitPerTopic} stored messages of every matching topic.
+     * The live subscription is registered before the history is read, so the two may overlap but never
+     * leave a gap. A message is recorded to the store before it is fanned out, so any history message
+     * can still show up live, however long before the registration it was recorded; the store keeps the
+     * instance that is fanned out, so every history message is skipped by identity when it does.
+     * Replayed messages are stripped of trace timestamps so that they do not count as slow deliveries.
+     */
+    private Flux<InboundMessage> inboundMessagesWithHistory(String topic, int limitPerTopic) {
+        return Flux.defer(() -> {
+            ConnectableFlux<InboundMessage> live = inboundMessages(topic).publish();
+            Disposable connection = live.connect();
+            List<InboundMessage> history = new ArrayList<>();
+            for (StoredMessage stored : messageStore.recent(TopicTrie.unshared(topic), limitPerTopic)) {
+                history.add(stored.message());
             }
+            Set<InboundMessage> replayed = Collections.newSetFromMap(new IdentityHashMap<>());
+            replayed.addAll(history);
+            return Flux.fromIterable(history)
+                    .map(InboundMessage::untraced)
+                    .concatWith(live.filter(message -> replayed.isEmpty() || !replayed.remove(message)))
+                    .doFinally(signal -> connection.dispose());
+        });
+    }
 
-            logger.info("MQTT client connected: {}", mqttClient.isConnected());
+    /**
+     * Latency percentiles of traced messages per stage and the slowest recent deliveries to streams.
+     */
+    @GetMapping("/trace")
+    public ResponseEntity<TraceReport> getTrace() {
+        return ResponseEntity.ok(latencyTracker.getReport());
+    }
 
-            if (mqttClient.isConnected()) {
-                logger.info("MQTT client reconnected successfully.");
-                return ResponseEntity.ok("MQTT client reconnected.");
-            } else {
-                logger.error("MQTT client failed to reconnect.");
-                return ResponseEntity.status(500).body("Failed to reconnect MQTT client.");
-            }
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxStats> getOutboxStats() {
+        return ResponseEntity.ok(outbox.getStats());
+    }
 
-        } catch (MqttException e) {
-            logger.error("Failed to reconnect to MQTT broker: {}", e.getMessage(), e);
-            return ResponseEntity.status(500).body("Error while reconnecting MQTT client: " + e.getMessage());
-        }
+    @GetMapping("/health")
+    public ResponseEntity<ConnectionHealth> getHealth() {
+        ConnectionHealth health = connectionSupervisor.getHealth();
+        return health.status().equals("DOWN") ? ResponseEntity.status(503).body(health) : ResponseEntity.ok(health);
+    }
+
+    /**
+     * Disconnects and suspends automatic reconnects until {@code /reconnect} is called.
+     */
+    @PostMapping("/disconnect")
+    public Mono<ResponseEntity<String>> disconnect() {
+        return Mono.fromCallable(() -> {
+                    connectionSupervisor.disconnect();
+                    logger.info("MQTT client disconnected successfully.");
+                    return ResponseEntity.ok("MQTT client disconnected.");
+                })
+                .subscribeOn(mqttBlockingScheduler)
+                .onErrorResume(e -> {
+                    logger.error("Error while disconnecting MQTT client: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.internalServerError().body("Failed to disconnect MQTT client."));
+                });
     }
 
-}
+    @PostMapping("/reconnect")
+    public Mono<ResponseEntity<String>> reconnect() {
+        if (connectionPool == null) {
+            logger.error("MQTT client is not initialized.");
+            return Mono.just(ResponseEntity.status(500).body("MQTT client is not initialized."));
+        }
+        return Mono.fromCallable(() -> {
+                    connectionSupervisor.reconnect();
+
+                    logger.info("MQTT client connected: {}", connectionPool.isConnected());
+
+                    if (connectionPool.isConnected()) {
+                        logger.info("MQTT client reconnected successfully.");
+                        return ResponseEntity.ok("MQTT client reconnected.");
+                    } else {
+                        logger.error("MQTT client failed to reconnect.");
+                        return ResponseEntity.status(500).body("Failed to reconnect MQTT client.");
+                    }
+                })
+                .subscribeOn(mqttBlockingScheduler)
+                .onErrorResume(e -> {
+                    logger.error("Failed to reconnect to MQTT broker: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(500).body("Error while reconnecting MQTT client: " + e.getMessage()));
+                });
+    }
 
+}
\ No newline at end of file
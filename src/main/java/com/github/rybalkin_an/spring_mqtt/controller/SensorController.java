@@ -1,8 +1,11 @@
 package com.github.rybalkin_an.spring_mqtt.controller;
 
+import com.github.rybalkin_an.spring_mqtt.model.SimulationSettings;
+import com.github.rybalkin_an.spring_mqtt.model.SimulationStats;
 import com.github.rybalkin_an.spring_mqtt.service.SensorService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -15,10 +18,18 @@ public class SensorController {
     @Autowired
     private SensorService sensorService;
 
+    /**
+     * Query parameters {@code sensors}, {@code rate}, {@code distribution} and {@code topic} are bound
+     * to the {@link SimulationSettings} used by {@code start}.
+     */
     @PostMapping("/{toggle}")
-    public ResponseEntity<String> startStreaming(@PathVariable String toggle) {
+    public ResponseEntity<String> startStreaming(@PathVariable String toggle, SimulationSettings settings) {
         if (toggle.equals("start")) {
-            sensorService.startStreaming();
+            try {
+                sensorService.startStreaming(settings);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
             return ResponseEntity.ok("Sensor streaming started.");
         } else if (toggle.equals("stop")) {
             sensorService.stopStreaming();
@@ -27,4 +38,9 @@ public class SensorController {
             return ResponseEntity.badRequest().body("Invalid toggle parameter. Use 'start' or 'stop'.");
         }
     }
+
+    @GetMapping("/stats")
+    public ResponseEntity<SimulationStats> getStats() {
+        return ResponseEntity.ok(sensorService.getStats());
+    }
 }
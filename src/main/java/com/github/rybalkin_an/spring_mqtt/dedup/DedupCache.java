@@ -0,0 +1,214 @@
+package com.github.rybalkin_an.spring_mqtt.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Remembers 64-bit message fingerprints for at least one window, within a fixed memory budget.
+ * <p>
+ * Fingerprints are spread over segments, each locked on its own. A segment keeps two generations,
+ * open-addressing tables of longs: new fingerprints go into the current one, which becomes the previous
+ * one once it is a window old or half full, and the previous one is then discarded. A fingerprint is
+ * therefore remembered for one to two windows, or less if more distinct messages arrive than fit the
+ * budget. Optionally each generation has a Bloom filter in front of its table, so that most new
+ * fingerprints are recognised without probing the tables.
+ */
+public class DedupCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int GENERATIONS = 2;
+    private static final int BLOOM_HASHES = 4;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowMillis;
+    private final int tableSize;
+
+    /**
+     * @param maxBytes     memory budget of the tables and Bloom filters together
+     * @param windowMillis minimum time a fingerprint is remembered, unless evicted for space
+     * @param bloom        whether each generation has a Bloom filter in front of its table
+     */
+    public DedupCache(long maxBytes, long windowMillis, boolean bloom, long nowMillis) {
+        // 8 bytes per table slot, plus one byte (8 bits) of Bloom filter per slot
+        long bytesPerSlot = bloom ? 9 : 8;
+        long slots = Math.max(16, maxBytes / (SEGMENTS * GENERATIONS * bytesPerSlot));
+        this.tableSize = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        this.windowMillis = windowMillis;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(bloom, nowMillis);
+        }
+    }
+
+    /**
+     * Fingerprint of a message: 64-bit FNV-1a of the topic length, topic, payload and trace origin,
+     * with a final avalanche so that all bits are usable as table and filter indexes.
+     */
+    public static long fingerprint(String topic, byte[] payload, long originMicros) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        long hash = mix(FNV_OFFSET, topicBytes.length);
+        for (byte b : topicBytes) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        for (byte b : payload) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        hash = mix(hash, originMicros);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Records the fingerprint.
+     * @return true if it was not seen within the retained generations, false for a duplicate.
+     */
+    public boolean add(long fingerprint, long nowMillis) {
+        return segments[(int) (fingerprint >>> 60)].add(fingerprint == 0 ? 1 : fingerprint, nowMillis);
+    }
+
+    /**
+     * @return fingerprints currently remembered.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return fingerprints that can be remembered at most, across all generations.
+     */
+    public long capacity() {
+        return (long) SEGMENTS * GENERATIONS * (tableSize / 2);
+    }
+
+    private final class Segment {
+
+        private final boolean bloom;
+        private long[] current = new long[tableSize];
+        private long[] previous = new long[tableSize];
+        private long[] currentFilter;
+        private long[] previousFilter;
+        private int currentSize;
+        private int previousSize;
+        private long generationStart;
+
+        Segment(boolean bloom, long nowMillis) {
+            this.bloom = bloom;
+            if (bloom) {
+                currentFilter = new long[tableSize / 8];
+                previousFilter = new long[tableSize / 8];
+            }
+            this.generationStart = nowMillis;
+        }
+
+        synchronized boolean add(long fingerprint, long nowMillis) {
+            long age = nowMillis - generationStart;
+            if (age >= 2 * windowMillis) {
+                // Idle for two windows: both generations have expired
+                rotate(nowMillis);
+                rotate(nowMillis);
+            } else if (age >= windowMillis) {
+                // Generations stay aligned to whole windows, so nothing outlives two of them
+                rotate(generationStart + windowMillis);
+            } else if (currentSize >= tableSize / 2) {
+                rotate(nowMillis);
+            }
+            boolean maybeSeen = !bloom
+                    || mightContain(currentFilter, fingerprint)
+                    || mightContain(previousFilter, fingerprint);
+            if (maybeSeen && (contains(current, fingerprint) || contains(previous, fingerprint))) {
+                return false;
+            }
+            insert(current, fingerprint);
+            if (bloom) {
+                addToFilter(currentFilter, fingerprint);
+            }
+            currentSize++;
+            return true;
+        }
+
+        synchronized int size() {
+            return currentSize + previousSize;
+        }
+
+        private void rotate(long startMillis) {
+            long[] table = previous;
+            Arrays.fill(table, 0);
+            previous = current;
+            current = table;
+            previousSize = currentSize;
+            currentSize = 0;
+            if (bloom) {
+                long[] filter = previousFilter;
+                Arrays.fill(filter, 0);
+                previousFilter = currentFilter;
+                currentFilter = filter;
+            }
+            generationStart = startMillis;
+        }
+
+        private boolean contains(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                long entry = table[slot];
+                if (entry == 0) {
+                    return false;
+                }
+                if (entry == fingerprint) {
+                    return true;
+                }
+            }
+        }
+
+        private void insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = fingerprint;
+        }
+
+        /**
+         * Bit indexes by double hashing of the fingerprint's upper half, independent of the table slot.
+         */
+        private boolean mightContain(long[] filter, long fingerprint) {
+            int bits = filter.length * 64;
+            int h1 = (int) (fingerprint >>> 32);
+            int h2 = (int) (fingerprint >>> 16) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addToFilter(long[] filter, long fingerprint) {
+            int bits = filter.length * 64;
+            int h1 = (int) (fingerprint >>> 32);
+            int h2 = (int) (fingerprint >>> 16) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                filter[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.rybalkin_an.spring_mqtt.dedup;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.pipeline.MessageHandler;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the topic and payload of every message for {@code dedup.window} and drops a message seen
+ * before if the broker flagged it as a redelivery (DUP), as QoS 1 redeliveries after a reconnect are.
+ * With this in front of the store and the streams, QoS 1 delivers effectively once, while a sensor
+ * legitimately repeating a reading is not affected. Copies arriving through bridged brokers carry no
+ * DUP flag, so on topics matching one of the {@code dedup.topics} filters any repeat is dropped; there,
+ * two distinct messages with identical topic and payload inside the window also count as duplicates.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "dedup.enabled", havingValue = "true")
+public class DeduplicatingHandler implements MessageHandler {
+
+    @Value("${dedup.window}")
+    private Duration window;
+
+    @Value("${dedup.max-bytes}")
+    private long maxBytes;
+
+    @Value("${dedup.bloom.enabled}")
+    private boolean bloom;
+
+    @Value("${dedup.topics}")
+    private List<String> topics;
+
+    private TopicTrie<String> contentTopics;
+
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    private DedupCache cache;
+
+    public DeduplicatingHandler() {
+    }
+
+    DeduplicatingHandler(Duration window, long maxBytes, boolean bloom, List<String> topics) {
+        this.window = window;
+        this.maxBytes = maxBytes;
+        this.bloom = bloom;
+        this.topics = topics;
+        createCache();
+    }
+
+    @PostConstruct
+    void createCache() {
+        cache = new DedupCache(maxBytes, window.toMillis(), bloom, System.currentTimeMillis());
+        contentTopics = TopicTrie.of(topics);
+    }
+
+    @Override
+    public InboundMessage handle(InboundMessage message) {
+        long fingerprint = DedupCache.fingerprint(message.topic(), message.payload(), message.originMicros());
+        // Recorded whatever the flag, so that a later redelivery of the message is recognized
+        if (cache.add(fingerprint, System.currentTimeMillis())
+                || !(message.duplicate() || contentTopics.matchesAny(message.topic()))) {
+            return message;
+        }
+        duplicateCount.incrementAndGet();
+        return null;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public long getCapacity() {
+        return cache.capacity();
+    }
+}
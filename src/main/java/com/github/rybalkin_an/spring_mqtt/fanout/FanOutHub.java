@@ -0,0 +1,293 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans every published item out to the subscribers whose topic filter matches the item's topic.
+ * Each subscriber owns a bounded ring buffer drained on a shared executor. {@link #publish} never
+ * blocks: a subscriber that cannot keep up only affects its own buffer, according to the
+ * configured {@link OverflowPolicy}.
+ */
+public class FanOutHub<T> implements Flow.Publisher<T>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutHub.class);
+
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int drainBatch;
+    private final ExecutorService executor;
+
+    private final TopicTrie<HubSubscription> routes = new TopicTrie<>();
+    private final Set<HubSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+
+    /**
+     * @param bufferSize     per-subscriber ring buffer capacity, rounded up to a power of two
+     * @param overflowPolicy what to do when a subscriber's buffer is full
+     * @param drainBatch     max items delivered to one subscriber before its drain task yields the thread
+     * @param executor       runs the drain tasks; owned and shut down by the hub
+     */
+    public FanOutHub(int bufferSize, OverflowPolicy overflowPolicy, int drainBatch, ExecutorService executor) {
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.drainBatch = drainBatch;
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to every topic, equivalent to {@code subscribe("#", subscriber)}.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscribe("#", subscriber);
+    }
+
+    /**
+     * Subscribes to items published on topics matching the MQTT topic filter.
+     * @throws IllegalArgumentException if the topic filter is invalid.
+     */
+    public void subscribe(String topicFilter, Flow.Subscriber<? super T> subscriber) {
+        TopicTrie.validateFilter(topicFilter);
+        HubSubscription subscription = new HubSubscription(topicFilter, subscriber);
+        subscriber.onSubscribe(subscription);
+        if (!subscription.cancelled) {
+            subscriptions.add(subscription);
+            routes.add(topicFilter, subscription);
+            if (subscription.cancelled) {
+                subscription.unregister();
+            }
+        }
+        subscription.release();
+    }
+
+    /**
+     * Offers the item to the buffer of every subscriber matching the topic and schedules delivery.
+     * Safe to call from any thread.
+     */
+    public void publish(String topic, T item) {
+        routes.match(topic, subscription -> subscription.offer(item));
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return total number of messages discarded by the overflow policy since the hub was created.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return a point-in-time view of every active subscription's buffer and counters.
+     */
+    public List<SubscriberStats> getSubscriberStats() {
+        List<SubscriberStats> stats = new ArrayList<>(subscriptions.size());
+        for (HubSubscription subscription : subscriptions) {
+            stats.add(subscription.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (HubSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        executor.shutdown();
+    }
+
+    private final class HubSubscription implements Flow.Subscription, Runnable {
+
+        private final long id = subscriptionIds.incrementAndGet();
+        private final String topicFilter;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final RingBuffer<T> buffer = new RingBuffer<>(bufferSize);
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        // Starts at 1 so that no drain runs until onSubscribe has returned, see release()
+        private final AtomicInteger wip = new AtomicInteger(1);
+
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile Throwable failure;
+
+        HubSubscription(String topicFilter, Flow.Subscriber<? super T> subscriber) {
+            this.topicFilter = topicFilter;
+            this.subscriber = subscriber;
+        }
+
+        void offer(T item) {
+            if (cancelled) {
+                return;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST -> {
+                    if (buffer.offerEvictingOldest(item)) {
+                        drop();
+                    }
+                }
+                case DROP_NEWEST -> {
+                    if (!buffer.offer(item)) {
+                        drop();
+                        return;
+                    }
+                }
+                case DISCONNECT -> {
+                    if (!buffer.offer(item)) {
+                        logger.warn("Disconnecting slow subscriber after {} buffered messages", buffer.capacity());
+                        fail(new SlowConsumerException(buffer.capacity()));
+                        return;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                if (current == Long.MAX_VALUE) {
+                    break;
+                }
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(current, next));
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            unregister();
+            schedule();
+        }
+
+        SubscriberStats stats() {
+            return new SubscriberStats(id, topicFilter, buffer.size(), requested.get(), delivered.get(), dropped.get());
+        }
+
+        private void drop() {
+            dropped.incrementAndGet();
+            droppedCount.incrementAndGet();
+        }
+
+        void complete() {
+            completed = true;
+            unregister();
+            schedule();
+        }
+
+        private void fail(Throwable error) {
+            failure = error;
+            unregister();
+            schedule();
+        }
+
+        private void unregister() {
+            subscriptions.remove(this);
+            routes.remove(topicFilter, this);
+        }
+
+        void release() {
+            execute();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                execute();
+            }
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                buffer.clear();
+            }
+        }
+
+        /**
+         * Delivers up to {@code drainBatch} buffered items within the outstanding demand, then either
+         * exits or re-submits itself so that a busy subscriber cannot monopolise a drain thread.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (terminated()) {
+                    return;
+                }
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && emitted < drainBatch) {
+                    T item = buffer.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    subscriber.onNext(item);
+                    emitted++;
+                    if (terminated()) {
+                        return;
+                    }
+                }
+                if (emitted != 0) {
+                    delivered.addAndGet(emitted);
+                    if (demand != Long.MAX_VALUE) {
+                        requested.addAndGet(-emitted);
+                    }
+                }
+                if (emitted == drainBatch && buffer.size() > 0) {
+                    execute();
+                    return;
+                }
+                if (completed && buffer.size() == 0) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private boolean terminated() {
+            if (cancelled) {
+                buffer.clear();
+                return true;
+            }
+            Throwable error = failure;
+            if (error != null) {
+                cancelled = true;
+                buffer.clear();
+                subscriber.onError(error);
+                return true;
+            }
+            return false;
+        }
+    }
+}
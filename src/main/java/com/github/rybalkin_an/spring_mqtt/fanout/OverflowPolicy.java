@@ -0,0 +1,16 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+/**
+ * What a {@link FanOutHub} does with a new message when a subscriber's ring buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /** Evict the oldest buffered message to make room for the new one. */
+    DROP_OLDEST,
+
+    /** Discard the new message and keep what is already buffered. */
+    DROP_NEWEST,
+
+    /** Cancel the subscription and signal {@link SlowConsumerException} to the subscriber. */
+    DISCONNECT
+}
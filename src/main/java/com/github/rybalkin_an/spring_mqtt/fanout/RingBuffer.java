@@ -0,0 +1,80 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+/**
+ * Bounded FIFO backed by a pre-allocated array. Capacity is rounded up to a power of two
+ * so that slot indexes can be computed with a mask.
+ */
+final class RingBuffer<T> {
+
+    private final Object[] elements;
+    private final int mask;
+    private long head;
+    private long tail;
+
+    RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new Object[size];
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    synchronized int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return false if the buffer is full and the item was not added.
+     */
+    synchronized boolean offer(T item) {
+        if (tail - head == elements.length) {
+            return false;
+        }
+        elements[(int) tail & mask] = item;
+        tail++;
+        return true;
+    }
+
+    /**
+     * Adds the item, evicting the oldest one if the buffer is full.
+     * @return true if an item was evicted.
+     */
+    synchronized boolean offerEvictingOldest(T item) {
+        boolean evicted = false;
+        if (tail - head == elements.length) {
+            elements[(int) head & mask] = null;
+            head++;
+            evicted = true;
+        }
+        elements[(int) tail & mask] = item;
+        tail++;
+        return evicted;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized T poll() {
+        if (head == tail) {
+            return null;
+        }
+        int index = (int) head & mask;
+        T item = (T) elements[index];
+        elements[index] = null;
+        head++;
+        return item;
+    }
+
+    synchronized void clear() {
+        while (head != tail) {
+            elements[(int) head & mask] = null;
+            head++;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+public class SlowConsumerException extends RuntimeException {
+
+    public SlowConsumerException(int bufferSize) {
+        super("Subscriber disconnected: ring buffer of " + bufferSize + " messages overflowed");
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+/**
+ * @param queued    items buffered for the subscriber and not yet delivered, i.e. how far it lags behind
+ * @param requested outstanding demand
+ * @param delivered items delivered since it subscribed
+ * @param dropped   items discarded by the overflow policy since it subscribed
+ */
+public record SubscriberStats(long id, String topicFilter, int queued, long requested, long delivered, long dropped) {
+}
@@ -0,0 +1,172 @@
+package com.github.rybalkin_an.spring_mqtt.logging;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logging of the per-message path whose cost does not grow with the message rate. Every message is
+ * only counted; one in {@code message-log.sample-every} is written to the {@code mqtt.messages}
+ * logger, at most {@code message-log.max-per-second} lines per second and with the payload cut to
+ * {@code message-log.max-payload-chars}. Totals are logged once per {@code message-log.summary-interval}.
+ */
+@Component
+public class MessageLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageLog.class);
+
+    private static final Logger messages = LoggerFactory.getLogger("mqtt.messages");
+
+    @Value("${message-log.sample-every}")
+    private int sampleEvery;
+
+    @Value("${message-log.max-per-second}")
+    private int maxPerSecond;
+
+    @Value("${message-log.max-payload-chars}")
+    private int maxPayloadChars;
+
+    @Value("${message-log.summary-interval}")
+    private Duration summaryInterval;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishedBytes = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private final AtomicLong lineSecond = new AtomicLong();
+    private final AtomicInteger linesInSecond = new AtomicInteger();
+
+    private ScheduledExecutorService summarizer;
+
+    @PostConstruct
+    void start() {
+        if (summaryInterval.isZero() || summaryInterval.isNegative()) {
+            return;
+        }
+        summarizer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-log-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = summaryInterval.toMillis();
+        summarizer.scheduleAtFixedRate(this::logSummary, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (summarizer != null) {
+            summarizer.shutdownNow();
+            logSummary();
+        }
+    }
+
+    public void published(String topic, byte[] payload) {
+        published.increment();
+        publishedBytes.add(payload.length);
+        if (sampled(messages.isInfoEnabled())) {
+            messages.info("Published to {}: {}", topic, preview(payload, maxPayloadChars));
+        }
+    }
+
+    public void received(String topic, byte[] payload) {
+        received.increment();
+        receivedBytes.add(payload.length);
+        if (sampled(messages.isInfoEnabled())) {
+            messages.info("Received from {}: {}", topic, preview(payload, maxPayloadChars));
+        }
+    }
+
+    public void buffered(String topic, byte[] payload) {
+        buffered.increment();
+        if (sampled(messages.isDebugEnabled())) {
+            messages.debug("Buffered for {}: {} bytes", topic, payload.length);
+        }
+    }
+
+    /**
+     * Failures are not sampled, only rate-limited, so that rare errors are never hidden.
+     */
+    public void failed(String topic, Throwable error) {
+        failed.increment();
+        if (messages.isWarnEnabled() && withinRate()) {
+            messages.warn("Failed to publish to {}: {}", topic, error.getMessage());
+        }
+    }
+
+    /**
+     * @return the payload as text if it looks like UTF-8 text, as hex otherwise, cut to about
+     * {@code maxChars} characters with the number of omitted bytes appended.
+     */
+    public static String preview(byte[] payload, int maxChars) {
+        boolean text = isText(payload);
+        int shown = Math.min(payload.length, Math.max(0, text ? maxChars : maxChars / 2));
+        StringBuilder preview = new StringBuilder(Math.max(0, maxChars) + 24);
+        if (text) {
+            preview.append(new String(payload, 0, shown, StandardCharsets.UTF_8));
+        } else {
+            preview.append("0x");
+            for (int i = 0; i < shown; i++) {
+                preview.append(Character.forDigit((payload[i] >> 4) & 0xF, 16)).append(Character.forDigit(payload[i] & 0xF, 16));
+            }
+        }
+        if (shown < payload.length) {
+            preview.append("... (").append(payload.length - shown).append(" more bytes)");
+        }
+        return preview.toString();
+    }
+
+    private static boolean isText(byte[] payload) {
+        int checked = Math.min(payload.length, 16);
+        for (int i = 0; i < checked; i++) {
+            int b = payload[i] & 0xFF;
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\r') {
+                return false;
+            }
+        }
+        return checked == 0 || (payload[0] & 0xC0) != 0x80 && (payload[0] & 0xFF) < 0xF8;
+    }
+
+    private boolean sampled(boolean enabled) {
+        return enabled && sampleEvery > 0
+                && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0)
+                && withinRate();
+    }
+
+    private boolean withinRate() {
+        long second = System.currentTimeMillis() / 1000;
+        long current = lineSecond.get();
+        if (second != current && lineSecond.compareAndSet(current, second)) {
+            linesInSecond.set(0);
+        }
+        return linesInSecond.incrementAndGet() <= maxPerSecond;
+    }
+
+    private void logSummary() {
+        long publishedCount = published.sumThenReset();
+        long receivedCount = received.sumThenReset();
+        long bufferedCount = buffered.sumThenReset();
+        long failedCount = failed.sumThenReset();
+        long bytesOut = publishedBytes.sumThenReset();
+        long bytesIn = receivedBytes.sumThenReset();
+        if (publishedCount + receivedCount + bufferedCount + failedCount > 0) {
+            logger.info("Messages in the last {}s: published={} bytes_out={} received={} bytes_in={} buffered={} failed={}",
+                    summaryInterval.toSeconds(), publishedCount, bytesOut, receivedCount, bytesIn, bufferedCount, failedCount);
+        }
+    }
+}
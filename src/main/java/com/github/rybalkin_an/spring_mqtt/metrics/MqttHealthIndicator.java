@@ -0,0 +1,28 @@
+package com.github.rybalkin_an.spring_mqtt.metrics;
+
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionHealth;
+import com.github.rybalkin_an.spring_mqtt.service.ConnectionSupervisor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the broker connections under {@code /actuator/health}: up while at least one connection
+ * of the pool is connected, so a partially degraded node keeps serving.
+ */
+@Component
+public class MqttHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private ConnectionSupervisor connectionSupervisor;
+
+    @Override
+    public Health health() {
+        ConnectionHealth health = connectionSupervisor.getHealth();
+        Health.Builder builder = health.status().equals("DOWN") ? Health.down() : Health.up();
+        return builder.withDetail("status", health.status())
+                .withDetail("connections", health.connections())
+                .build();
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.rybalkin_an.spring_mqtt.metrics;
+
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.dedup.DeduplicatingHandler;
+import com.github.rybalkin_an.spring_mqtt.fanout.FanOutHub;
+import com.github.rybalkin_an.spring_mqtt.fanout.SubscriberStats;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import com.github.rybalkin_an.spring_mqtt.pipeline.InboundPipeline;
+import com.github.rybalkin_an.spring_mqtt.wal.Outbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of the publish/subscribe path, exposed through Actuator ({@code /actuator/prometheus}).
+ * Hot-path meters are created once and cached, so recording is a lookup-free increment. Inbound
+ * meters are tagged with the first {@code metrics.topic-levels} levels of the topic, and with
+ * {@code other} beyond {@code metrics.max-topic-tags} distinct values, to bound cardinality.
+ */
+@Component
+public class MqttMetrics {
+
+    private static final String OTHER_TOPICS = "other";
+
+    private static final String[] OUTCOMES = {"published", "buffered", "failed"};
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private FanOutHub<InboundMessage> fanOutHub;
+
+    @Autowired
+    private InboundPipeline inboundPipeline;
+
+    @Autowired(required = false)
+    private DeduplicatingHandler deduplicatingHandler;
+
+    @Autowired
+    private MqttConnectionPool connectionPool;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Value("${metrics.topic-levels}")
+    private int topicLevels;
+
+    @Value("${metrics.max-topic-tags}")
+    private int maxTopicTags;
+
+    @Value("${metrics.refresh-interval-ms}")
+    private long refreshIntervalMs;
+
+    // [qos][outcome]
+    private final Timer[][] publishTimers = new Timer[3][OUTCOMES.length];
+
+    private final Map<String, InboundMeters> inboundMeters = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private MultiGauge subscriberQueued;
+
+    private MultiGauge subscriberDropped;
+
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    void register() {
+        for (int qos = 0; qos < publishTimers.length; qos++) {
+            for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+                publishTimers[qos][outcome] = Timer.builder("mqtt.publish")
+                        .description("Time from publish call to broker acknowledgement or buffering")
+                        .tags("qos", Integer.toString(qos), "outcome", OUTCOMES[outcome])
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+        }
+
+        Gauge.builder("mqtt.publish.inflight", connectionPool,
+                        pool -> pool.getPublishers().stream().mapToInt(MqttConnection::getInflightCount).sum())
+                .description("Publishes sent and awaiting acknowledgement")
+                .register(registry);
+        for (MqttConnection connection : connectionPool.getConnections()) {
+            Gauge.builder("mqtt.connection.connected", connection, c -> c.isConnected() ? 1 : 0)
+                    .tags("client_id", connection.getClientId(),
+                            "role", connectionPool.getPublishers().contains(connection) ? "publisher" : "subscriber")
+                    .register(registry);
+        }
+        Gauge.builder("mqtt.streams.active", activeStreams, AtomicInteger::get)
+                .description("Open subscribe streams")
+                .register(registry);
+
+        Gauge.builder("fanout.subscribers", fanOutHub, FanOutHub::getSubscriberCount)
+                .register(registry);
+        FunctionCounter.builder("fanout.dropped", fanOutHub, FanOutHub::getDroppedCount)
+                .description("Messages discarded by the fan-out overflow policy")
+                .register(registry);
+        subscriberQueued = MultiGauge.builder("fanout.subscriber.queued")
+                .description("Messages buffered for a subscriber and not yet delivered")
+                .register(registry);
+        subscriberDropped = MultiGauge.builder("fanout.subscriber.dropped")
+                .description("Messages dropped for a subscriber since it subscribed")
+                .register(registry);
+
+        Gauge.builder("pipeline.queued", inboundPipeline, InboundPipeline::getQueuedCount)
+                .description("Inbound messages waiting on the pipeline lanes")
+                .register(registry);
+        FunctionCounter.builder("pipeline.dropped", inboundPipeline, InboundPipeline::getDroppedCount)
+                .description("Inbound messages dropped because their lane was full")
+                .register(registry);
+        FunctionCounter.builder("pipeline.failed", inboundPipeline, InboundPipeline::getFailedCount)
+                .description("Inbound messages whose handlers threw an exception")
+                .register(registry);
+
+        if (deduplicatingHandler != null) {
+            FunctionCounter.builder("dedup.duplicates", deduplicatingHandler, DeduplicatingHandler::getDuplicateCount)
+                    .description("Inbound messages dropped as already received")
+                    .register(registry);
+            Gauge.builder("dedup.entries", deduplicatingHandler, DeduplicatingHandler::getSize)
+                    .description("Message fingerprints remembered for deduplication")
+                    .register(registry);
+        }
+
+        Gauge.builder("mqtt.outbox.size", outbox, Outbox::getSizeBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("mqtt.outbox.buffered", outbox, Outbox::getBufferedCount)
+                .register(registry);
+        FunctionCounter.builder("mqtt.outbox.drained", outbox, Outbox::getDrainedCount)
+                .register(registry);
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshSubscribers, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * @param outcome {@code null} if the publish failed
+     */
+    public void recordPublish(int qos, PublishOutcome outcome, long startNanos) {
+        if (qos < 0 || qos >= publishTimers.length) {
+            return;
+        }
+        int index = outcome == null ? 2 : outcome == PublishOutcome.BUFFERED ? 1 : 0;
+        publishTimers[qos][index].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordInbound(String topic, int bytes) {
+        String tag = topicTag(topic);
+        InboundMeters meters = inboundMeters.get(tag);
+        if (meters == null) {
+            if (inboundMeters.size() >= maxTopicTags) {
+                tag = OTHER_TOPICS;
+            }
+            meters = inboundMeters.computeIfAbsent(tag, InboundMeters::new);
+        }
+        meters.messages.increment();
+        meters.bytes.increment(bytes);
+    }
+
+    public void streamOpened() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamClosed() {
+        activeStreams.decrementAndGet();
+    }
+
+    private String topicTag(String topic) {
+        if (topicLevels <= 0) {
+            return topic;
+        }
+        int end = -1;
+        for (int level = 0; level < topicLevels; level++) {
+            end = topic.indexOf('/', end + 1);
+            if (end < 0) {
+                return topic;
+            }
+        }
+        return topic.substring(0, end);
+    }
+
+    private void refreshSubscribers() {
+        List<SubscriberStats> stats = fanOutHub.getSubscriberStats();
+        subscriberQueued.register(stats.stream()
+                .map(subscriber -> MultiGauge.Row.of(subscriberTags(subscriber), subscriber.queued()))
+                .toList(), true);
+        subscriberDropped.register(stats.stream()
+                .map(subscriber -> MultiGauge.Row.of(subscriberTags(subscriber), subscriber.dropped()))
+                .toList(), true);
+    }
+
+    private static Tags subscriberTags(SubscriberStats subscriber) {
+        return Tags.of("subscriber", Long.toString(subscriber.id()), "filter", subscriber.topicFilter());
+    }
+
+    private final class InboundMeters {
+
+        private final Counter messages;
+        private final Counter bytes;
+
+        InboundMeters(String topic) {
+            messages = Counter.builder("mqtt.inbound.messages").tag("topic", topic).register(registry);
+            bytes = Counter.builder("mqtt.inbound.bytes").tag("topic", topic).baseUnit("bytes").register(registry);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Statistics of one sensor's readings over one window. Percentiles are approximate, within the
+ * configured relative accuracy of the sketch.
+ */
+public record AggregateSnapshot(UUID uuid, Duration window, WindowKind kind, long windowStart, long windowEnd,
+                                long count, double min, double max, double mean,
+                                double p50, double p90, double p99) {
+}
@@ -0,0 +1,10 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import java.util.List;
+
+/**
+ * @param status {@code UP} if every connection is connected, {@code DEGRADED} if some are,
+ *               {@code DOWN} if none is.
+ */
+public record ConnectionHealth(String status, List<ConnectionStatus> connections) {
+}
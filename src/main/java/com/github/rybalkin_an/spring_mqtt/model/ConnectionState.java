@@ -0,0 +1,9 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+public enum ConnectionState {
+    CONNECTED,
+    /** Lost or never established; reconnect attempts are scheduled with backoff. */
+    RECONNECTING,
+    /** Disconnected on request, no reconnect attempts until asked to reconnect. */
+    DISCONNECTED
+}
@@ -0,0 +1,9 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * State of one pooled broker connection. {@code since} is the epoch millisecond of the last state
+ * change, {@code attempts} the number of failed reconnect attempts since it was last connected.
+ */
+public record ConnectionStatus(String clientId, String role, ConnectionState state, long since, int attempts,
+                               String lastError) {
+}
@@ -0,0 +1,7 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * A stored message as returned by the history API, payload rendered as text.
+ */
+public record HistoryMessage(String topic, long receivedAt, String payload) {
+}
@@ -0,0 +1,45 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message received from the broker, together with the concrete topic it was published to.
+ * The payload is kept as the raw bytes handed over by Paho; it is only decoded where a text
+ * representation is actually needed.
+ *
+ * @param originMicros   epoch microseconds the publisher stamped the message with, 0 if it was not traced
+ * @param receivedMicros epoch microseconds the message arrived at, only set for traced messages
+ * @param duplicate      the broker flagged the message as a redelivery (MQTT DUP flag)
+ */
+public record InboundMessage(String topic, byte[] payload, long originMicros, long receivedMicros, boolean duplicate) {
+
+    public InboundMessage(String topic, byte[] payload) {
+        this(topic, payload, 0, 0, false);
+    }
+
+    public InboundMessage(String topic, byte[] payload, long originMicros, long receivedMicros) {
+        this(topic, payload, originMicros, receivedMicros, false);
+    }
+
+    public boolean isTraced() {
+        return originMicros != 0;
+    }
+
+    /**
+     * @return the same message with another payload, keeping the trace timestamps and DUP flag.
+     */
+    public InboundMessage withPayload(byte[] payload) {
+        return payload == this.payload ? this : new InboundMessage(topic, payload, originMicros, receivedMicros, duplicate);
+    }
+
+    /**
+     * @return the message without trace timestamps, for messages that are not delivered live.
+     */
+    public InboundMessage untraced() {
+        return isTraced() ? new InboundMessage(topic, payload, 0, 0, duplicate) : this;
+    }
+
+    public String payloadAsString() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
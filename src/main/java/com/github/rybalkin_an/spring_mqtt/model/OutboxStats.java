@@ -0,0 +1,15 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * State of the write-ahead buffer: messages waiting on disk and totals since startup.
+ */
+public record OutboxStats(
+        boolean enabled,
+        long pending,
+        long sizeBytes,
+        long buffered,
+        long drained,
+        long expired,
+        long dropped,
+        long rejected) {
+}
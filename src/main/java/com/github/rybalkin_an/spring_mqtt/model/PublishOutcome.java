@@ -0,0 +1,8 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+public enum PublishOutcome {
+    /** Acknowledged by the broker according to its QoS. */
+    PUBLISHED,
+    /** Stored in the write-ahead buffer, to be sent once the broker is reachable. */
+    BUFFERED
+}
@@ -0,0 +1,23 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+/**
+ * One record of a bulk publish. The payload may be a JSON string, published as-is, or any other
+ * JSON value, published as its compact JSON text.
+ */
+@Data
+public class PublishRequest {
+
+    private String topic;
+    private Integer qos;
+    private JsonNode payload;
+
+    public String payloadAsString() {
+        if (payload == null || payload.isNull()) {
+            return "";
+        }
+        return payload.isTextual() ? payload.textValue() : payload.toString();
+    }
+}
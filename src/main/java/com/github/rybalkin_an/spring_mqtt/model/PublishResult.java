@@ -0,0 +1,23 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * Outcome of one record of a bulk publish, in the order the records were received.
+ */
+public record PublishResult(int index, String topic, boolean published, boolean buffered, String error) {
+
+    public static PublishResult published(int index, String topic) {
+        return new PublishResult(index, topic, true, false, null);
+    }
+
+    public static PublishResult buffered(int index, String topic) {
+        return new PublishResult(index, topic, false, true, null);
+    }
+
+    public static PublishResult of(int index, String topic, PublishOutcome outcome) {
+        return outcome == PublishOutcome.BUFFERED ? buffered(index, topic) : published(index, topic);
+    }
+
+    public static PublishResult failed(int index, String topic, Throwable error) {
+        return new PublishResult(index, topic, false, false, error.getMessage());
+    }
+}
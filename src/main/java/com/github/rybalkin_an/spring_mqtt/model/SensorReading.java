@@ -0,0 +1,27 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Primitive, mutable counterpart of {@link Sensor} used on the encode/decode hot path, so a
+ * reading can be produced or consumed without allocating a UUID, a BigDecimal or a timestamp string.
+ */
+@Data
+public class SensorReading {
+
+    private long uuidMostSignificantBits;
+    private long uuidLeastSignificantBits;
+    private long epochMillis;
+    private double value;
+
+    public void setUuid(UUID uuid) {
+        this.uuidMostSignificantBits = uuid.getMostSignificantBits();
+        this.uuidLeastSignificantBits = uuid.getLeastSignificantBits();
+    }
+
+    public UUID getUuid() {
+        return new UUID(uuidMostSignificantBits, uuidLeastSignificantBits);
+    }
+}
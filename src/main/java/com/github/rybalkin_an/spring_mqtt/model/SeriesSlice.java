@@ -0,0 +1,9 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import java.util.UUID;
+
+/**
+ * Readings of one sensor in columnar form, oldest first: {@code values[i]} was read at {@code epochMillis[i]}.
+ */
+public record SeriesSlice(UUID uuid, long[] epochMillis, double[] values) {
+}
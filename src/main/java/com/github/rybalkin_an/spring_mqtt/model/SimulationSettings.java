@@ -0,0 +1,27 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import lombok.Data;
+
+/**
+ * Parameters of a simulator run.
+ */
+@Data
+public class SimulationSettings {
+
+    /** Number of virtual sensors, each with its own uuid. */
+    private int sensors = 1;
+
+    /** Aggregate messages per second over all sensors. */
+    private double rate = 1;
+
+    private ValueDistribution distribution = ValueDistribution.UNIFORM;
+
+    /**
+     * Topic to publish to; {@code {index}} and {@code {uuid}} are replaced per sensor.
+     * Defaults to {@code mqtt.topic} when not set.
+     */
+    private String topic;
+
+    /** Wraps readings in a traced envelope, see {@link com.github.rybalkin_an.spring_mqtt.codec.Envelope}. */
+    private boolean trace;
+}
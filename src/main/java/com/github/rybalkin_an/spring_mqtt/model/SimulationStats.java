@@ -0,0 +1,16 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * Progress of the current (or last) simulator run.
+ */
+public record SimulationStats(
+        boolean running,
+        int sensors,
+        double targetRate,
+        long published,
+        long buffered,
+        long failed,
+        long skipped,
+        double elapsedSeconds,
+        double achievedRate) {
+}
@@ -0,0 +1,11 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * A traced message that was among the slowest to reach a stream.
+ *
+ * @param originMicros epoch microseconds the publisher stamped the message with
+ * @param brokerMicros time from the origin stamp until the message came back from the broker
+ * @param egressMicros time from the origin stamp until the message was handed to a stream
+ */
+public record SlowMessage(String topic, long originMicros, long brokerMicros, long egressMicros, int bytes) {
+}
@@ -0,0 +1,19 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A JSON text frame sent by a WebSocket client. {@code op} is one of {@code subscribe},
+ * {@code unsubscribe}, {@code credit} or {@code publish}; the client chooses {@code id} to match the
+ * acknowledgement. {@code credit} is the number of further messages the client is ready to receive on
+ * the topic filter.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class SocketCommand extends PublishRequest {
+
+    private String op;
+    private Long id;
+    private Long credit;
+}
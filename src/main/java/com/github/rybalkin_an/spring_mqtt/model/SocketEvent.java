@@ -0,0 +1,29 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A JSON text frame sent to a WebSocket client: an {@code ack} of a command, an {@code error}, or a
+ * {@code message} delivered on a subscribed topic filter.
+ *
+ * @param outcome PUBLISHED or BUFFERED, for the acknowledgement of a publish
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SocketEvent(String type, Long id, String topic, String outcome, String payload, String error) {
+
+    public static SocketEvent ack(Long id, String topic) {
+        return new SocketEvent("ack", id, topic, null, null, null);
+    }
+
+    public static SocketEvent published(Long id, String topic, PublishOutcome outcome) {
+        return new SocketEvent("ack", id, topic, outcome.name(), null, null);
+    }
+
+    public static SocketEvent error(Long id, String topic, String error) {
+        return new SocketEvent("error", id, topic, null, null, error);
+    }
+
+    public static SocketEvent message(String topic, String payload) {
+        return new SocketEvent("message", null, topic, null, payload, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * Latency percentiles of one tracing stage, in microseconds since the origin stamp.
+ */
+public record StageLatency(String stage, long count, double p50, double p99, double p999, double max) {
+}
@@ -0,0 +1,6 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+import java.util.List;
+
+public record TraceReport(List<StageLatency> stages, List<SlowMessage> slowest) {
+}
@@ -0,0 +1,16 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+/**
+ * Shape of the simulated temperature readings, always within -20.0 to 50.0.
+ */
+public enum ValueDistribution {
+
+    /** Independent uniformly distributed readings. */
+    UNIFORM,
+
+    /** Normally distributed readings around 15.0 with a standard deviation of 10.0, clamped to the range. */
+    GAUSSIAN,
+
+    /** A one minute sine wave over the whole range, phase-shifted per sensor. */
+    SINE
+}
@@ -0,0 +1,8 @@
+package com.github.rybalkin_an.spring_mqtt.model;
+
+public enum WindowKind {
+    /** Fixed, non-overlapping windows aligned to multiples of the window length; the last completed one is reported. */
+    TUMBLING,
+    /** The window ending now, advancing in steps of one slot. */
+    SLIDING
+}
@@ -0,0 +1,121 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import com.github.rybalkin_an.spring_mqtt.fanout.FanOutHub;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.store.MessageStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes inbound messages off the Paho callback thread. Each message is queued on the lane of its
+ * {@link PartitionKey}, and the lane applies the {@link MessageHandler}s and then stores and fans it
+ * out. Messages of the same key keep their order; different keys are processed on all cores.
+ */
+@Component
+public class InboundPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundPipeline.class);
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private FanOutHub<InboundMessage> fanOutHub;
+
+    @Autowired(required = false)
+    private List<MessageHandler> handlers = List.of();
+
+    @Value("${pipeline.enabled}")
+    private boolean enabled;
+
+    @Value("${pipeline.lanes}")
+    private int lanes;
+
+    @Value("${pipeline.key}")
+    private PartitionKey key;
+
+    @Value("${pipeline.lane-capacity}")
+    private int laneCapacity;
+
+    @Value("${pipeline.drain-batch}")
+    private int drainBatch;
+
+    private PartitionedPipeline<InboundMessage> pipeline;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        int laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(laneCount, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-lane-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pipeline = new PartitionedPipeline<>(laneCount, laneCapacity, drainBatch, executor, this::process);
+        logger.info("Inbound pipeline started: {} lanes by {}, {} handlers", laneCount, key, handlers.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Queues the message on its lane and returns right away, or processes it on the calling thread
+     * if the pipeline is disabled.
+     */
+    public void submit(InboundMessage message) {
+        if (pipeline == null) {
+            process(message);
+        } else {
+            pipeline.submit(keyHash(message), message);
+        }
+    }
+
+    void process(InboundMessage message) {
+        for (MessageHandler handler : handlers) {
+            message = handler.handle(message);
+            if (message == null) {
+                return;
+            }
+        }
+        // Stored before fan-out, so a stream replaying history never misses a message it did not receive live
+        messageStore.record(message);
+        fanOutHub.publish(message.topic(), message);
+    }
+
+    private int keyHash(InboundMessage message) {
+        return key == PartitionKey.SENSOR ? SensorKeys.hash(message.payload(), message.topic()) : message.topic().hashCode();
+    }
+
+    public boolean isEnabled() {
+        return pipeline != null;
+    }
+
+    public long getQueuedCount() {
+        return pipeline == null ? 0 : pipeline.getQueuedCount();
+    }
+
+    public long getDroppedCount() {
+        return pipeline == null ? 0 : pipeline.getDroppedCount();
+    }
+
+    public long getFailedCount() {
+        return pipeline == null ? 0 : pipeline.getFailedCount();
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+
+/**
+ * A processing step of the {@link InboundPipeline}. Every bean implementing it is applied to each
+ * inbound message, in {@link org.springframework.core.annotation.Order} order, before the message is
+ * stored and fanned out. Handlers run on the pipeline lanes in parallel, but never concurrently for
+ * messages of the same key.
+ */
+public interface MessageHandler {
+
+    /**
+     * @return the message to pass on, possibly transformed or enriched, or {@code null} to filter it out.
+     */
+    InboundMessage handle(InboundMessage message);
+}
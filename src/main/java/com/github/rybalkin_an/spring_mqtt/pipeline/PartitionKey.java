@@ -0,0 +1,13 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+/**
+ * What inbound messages are partitioned by; ordering is preserved among messages of the same key.
+ */
+public enum PartitionKey {
+
+    /** The concrete topic of the message. */
+    TOPIC,
+
+    /** The uuid of the sensor reading in the payload, or the topic for payloads that are not readings. */
+    SENSOR
+}
@@ -0,0 +1,159 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Processes items on a fixed number of lanes, each a lock-free queue drained by at most one thread at
+ * a time. Items with the same key always go to the same lane and are therefore processed in the order
+ * they were submitted; items of different lanes are processed in parallel. {@link #submit} never
+ * blocks: an item that finds its lane full is dropped.
+ */
+public class PartitionedPipeline<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedPipeline.class);
+
+    private final List<Lane> lanes;
+    private final int laneCapacity;
+    private final int drainBatch;
+    private final ExecutorService executor;
+    private final Consumer<T> processor;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param laneCount    number of lanes, typically one per core
+     * @param laneCapacity max items queued per lane
+     * @param drainBatch   max items processed by one lane before its drain task yields the thread
+     * @param executor     runs the drain tasks; owned and shut down by the pipeline
+     * @param processor    called for every item on its lane's drain task; exceptions are counted and logged
+     */
+    public PartitionedPipeline(int laneCount, int laneCapacity, int drainBatch, ExecutorService executor, Consumer<T> processor) {
+        if (laneCount <= 0 || laneCapacity <= 0 || drainBatch <= 0) {
+            throw new IllegalArgumentException("Lane count, capacity and drain batch must be positive");
+        }
+        this.lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new Lane());
+        }
+        this.laneCapacity = laneCapacity;
+        this.drainBatch = drainBatch;
+        this.executor = executor;
+        this.processor = processor;
+    }
+
+    /**
+     * Queues the item on the lane of its key. Safe to call from any thread.
+     * @param keyHash hash code of the item's ordering key
+     * @return false if the lane was full and the item was dropped.
+     */
+    public boolean submit(int keyHash, T item) {
+        int spread = keyHash ^ (keyHash >>> 16);
+        return lanes.get(Math.floorMod(spread, lanes.size())).offer(item);
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * @return items queued on all lanes and not yet processed.
+     */
+    public long getQueuedCount() {
+        long queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.size.get();
+        }
+        return queued;
+    }
+
+    /**
+     * @return total number of items dropped because their lane was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return total number of items whose processing threw an exception.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private final class Lane implements Runnable {
+
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        boolean offer(T item) {
+            if (size.incrementAndGet() > laneCapacity) {
+                size.decrementAndGet();
+                droppedCount.incrementAndGet();
+                return false;
+            }
+            queue.offer(item);
+            if (wip.getAndIncrement() == 0) {
+                execute();
+            }
+            return true;
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                size.addAndGet(-queue.size());
+                queue.clear();
+            }
+        }
+
+        /**
+         * Processes up to {@code drainBatch} items, then either exits or re-submits itself so that a
+         * busy lane cannot monopolise a thread shared with other lanes.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                int processed = 0;
+                while (processed < drainBatch) {
+                    T item = queue.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    size.decrementAndGet();
+                    processed++;
+                    try {
+                        processor.accept(item);
+                    } catch (RuntimeException e) {
+                        failedCount.incrementAndGet();
+                        logger.warn("Pipeline failed to process an item: {}", e.getMessage(), e);
+                    }
+                }
+                if (processed == drainBatch && !queue.isEmpty()) {
+                    execute();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import com.github.rybalkin_an.spring_mqtt.codec.BinarySensorCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the sensor uuid of a payload for {@link PartitionKey#SENSOR} without decoding it, since this
+ * runs on the MQTT callback thread for every message: the uuid bytes of a binary reading, or a
+ * bounded scan for the {@code "uuid"} string at the start of a JSON one.
+ */
+final class SensorKeys {
+
+    // JsonSensorCodec writes the uuid first; other producers are given some leeway
+    private static final int SCAN_BYTES = 128;
+    private static final int MAX_UUID_BYTES = 64;
+    private static final byte[] UUID_KEY = "\"uuid\"".getBytes(StandardCharsets.US_ASCII);
+
+    private SensorKeys() {
+    }
+
+    /**
+     * @return a hash of the payload's sensor uuid, or of the topic if no uuid is found.
+     */
+    static int hash(byte[] payload, String topic) {
+        if (BinarySensorCodec.isBinary(payload)) {
+            int hash = 1;
+            for (int i = 1; i <= 16; i++) {
+                hash = 31 * hash + payload[i];
+            }
+            return hash;
+        }
+        int key = indexOf(payload, UUID_KEY, Math.min(payload.length, SCAN_BYTES));
+        if (key >= 0) {
+            int position = skipWhitespace(payload, key + UUID_KEY.length);
+            if (position < payload.length && payload[position] == ':') {
+                position = skipWhitespace(payload, position + 1);
+                if (position < payload.length && payload[position] == '"') {
+                    int end = Math.min(payload.length, position + 1 + MAX_UUID_BYTES);
+                    int hash = 1;
+                    for (int i = position + 1; i < end; i++) {
+                        if (payload[i] == '"') {
+                            return hash;
+                        }
+                        hash = 31 * hash + payload[i];
+                    }
+                }
+            }
+        }
+        return topic.hashCode();
+    }
+
+    private static int indexOf(byte[] payload, byte[] target, int limit) {
+        for (int i = 0; i + target.length <= limit; i++) {
+            int j = 0;
+            while (j < target.length && payload[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] payload, int position) {
+        while (position < payload.length && (payload[position] == ' ' || payload[position] == '\t'
+                || payload[position] == '\n' || payload[position] == '\r')) {
+            position++;
+        }
+        return position;
+    }
+}
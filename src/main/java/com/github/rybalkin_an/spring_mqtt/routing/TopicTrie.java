@@ -0,0 +1,239 @@
+package com.github.rybalkin_an.spring_mqtt.routing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Registry of values keyed by MQTT topic filter. Filters are stored level by level, so matching a
+ * topic costs O(topic depth) regardless of how many filters are registered. Supports the
+ * {@code +} (single level) and {@code #} (multi level) wildcards with MQTT semantics, including
+ * the rule that wildcards at the first level do not match topics starting with {@code $}.
+ * <p>
+ * Matching is lock-free; {@link #add} and {@link #remove} are serialized.
+ */
+public class TopicTrie<T> {
+
+    private static final String SINGLE_LEVEL = "+";
+    private static final String MULTI_LEVEL = "#";
+    private static final String SHARED_PREFIX = "$share/";
+
+    private final Node<T> root = new Node<>(null, null);
+
+    public synchronized void add(String topicFilter, T value) {
+        validateFilter(topicFilter);
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = levelEnd(topicFilter, start);
+            String level = topicFilter.substring(start, end);
+            Node<T> parent = node;
+            node = parent.children.computeIfAbsent(level, key -> new Node<>(parent, key));
+            if (end == topicFilter.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * @return true if the value was registered under the filter.
+     */
+    public synchronized boolean remove(String topicFilter, T value) {
+        Node<T> node = root;
+        int start = 0;
+        while (node != null) {
+            int end = levelEnd(topicFilter, start);
+            node = node.children.get(topicFilter.substring(start, end));
+            if (end == topicFilter.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node == null || !node.values.remove(value)) {
+            return false;
+        }
+        while (node.parent != null && node.values.isEmpty() && node.children.isEmpty()) {
+            node.parent.children.remove(node.level, node);
+            node = node.parent;
+        }
+        return true;
+    }
+
+    /**
+     * Passes every value whose filter matches the concrete topic to the consumer.
+     */
+    public void match(String topic, Consumer<? super T> consumer) {
+        match(root, topic, 0, !topic.startsWith("$"), consumer);
+    }
+
+    /**
+     * Cheap enough to call per message, with no per-topic cache to grow when topics carry device ids.
+     * @return true if any registered filter matches the concrete topic; stops at the first match.
+     */
+    public boolean matchesAny(String topic) {
+        return matchesAny(root, topic, 0, !topic.startsWith("$"));
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    /**
+     * @return a trie of the non-blank filters of a comma-separated list from configuration, each
+     * registered under itself.
+     */
+    public static TopicTrie<String> of(List<String> topicFilters) {
+        TopicTrie<String> trie = new TopicTrie<>();
+        for (String filter : topicFilters) {
+            if (!filter.isBlank()) {
+                trie.add(filter.strip(), filter.strip());
+            }
+        }
+        return trie;
+    }
+
+    private boolean matchesAny(Node<T> node, String topic, int start, boolean wildcardsAllowed) {
+        if (wildcardsAllowed) {
+            Node<T> multi = node.children.get(MULTI_LEVEL);
+            if (multi != null && !multi.values.isEmpty()) {
+                return true;
+            }
+        }
+        if (start > topic.length()) {
+            return !node.values.isEmpty();
+        }
+        int end = levelEnd(topic, start);
+        Node<T> exact = node.children.get(topic.substring(start, end));
+        if (exact != null && matchesAny(exact, topic, end + 1, true)) {
+            return true;
+        }
+        if (wildcardsAllowed) {
+            Node<T> single = node.children.get(SINGLE_LEVEL);
+            return single != null && matchesAny(single, topic, end + 1, true);
+        }
+        return false;
+    }
+
+    private void match(Node<T> node, String topic, int start, boolean wildcardsAllowed, Consumer<? super T> consumer) {
+        if (wildcardsAllowed) {
+            Node<T> multi = node.children.get(MULTI_LEVEL);
+            if (multi != null) {
+                multi.values.forEach(consumer);
+            }
+        }
+        if (start > topic.length()) {
+            node.values.forEach(consumer);
+            return;
+        }
+        int end = levelEnd(topic, start);
+        Node<T> exact = node.children.get(topic.substring(start, end));
+        if (exact != null) {
+            match(exact, topic, end + 1, true, consumer);
+        }
+        if (wildcardsAllowed) {
+            Node<T> single = node.children.get(SINGLE_LEVEL);
+            if (single != null) {
+                match(single, topic, end + 1, true, consumer);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the filter is empty or uses wildcards in a way MQTT does not allow.
+     */
+    public static void validateFilter(String topicFilter) {
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            throw new IllegalArgumentException("Topic filter must not be empty");
+        }
+        int start = 0;
+        while (true) {
+            int end = levelEnd(topicFilter, start);
+            String level = topicFilter.substring(start, end);
+            boolean last = end == topicFilter.length();
+            if (level.equals(MULTI_LEVEL) && !last) {
+                throw new IllegalArgumentException("'#' must be the last level of topic filter: " + topicFilter);
+            }
+            if (level.length() > 1 && (level.contains(SINGLE_LEVEL) || level.contains(MULTI_LEVEL))) {
+                throw new IllegalArgumentException("Wildcards must occupy a whole level of topic filter: " + topicFilter);
+            }
+            if (last) {
+                return;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return the filter of a shared subscription {@code $share/<group>/<filter>} without its prefix,
+     * which is the filter the delivered topics match; any other filter unchanged.
+     * @throws IllegalArgumentException if the share name is empty or contains wildcards, or the filter is missing.
+     */
+    public static String unshared(String topicFilter) {
+        if (topicFilter == null || !topicFilter.startsWith(SHARED_PREFIX)) {
+            return topicFilter;
+        }
+        int groupEnd = topicFilter.indexOf('/', SHARED_PREFIX.length());
+        if (groupEnd <= SHARED_PREFIX.length() || groupEnd == topicFilter.length() - 1) {
+            throw new IllegalArgumentException("Shared subscription must be $share/<group>/<filter>: " + topicFilter);
+        }
+        String group = topicFilter.substring(SHARED_PREFIX.length(), groupEnd);
+        if (group.contains(SINGLE_LEVEL) || group.contains(MULTI_LEVEL)) {
+            throw new IllegalArgumentException("Share name must not contain wildcards: " + topicFilter);
+        }
+        return topicFilter.substring(groupEnd + 1);
+    }
+
+    /**
+     * @return true if the concrete topic matches the filter.
+     */
+    public static boolean matches(String topicFilter, String topic) {
+        if (topic.startsWith("$") && (topicFilter.startsWith(SINGLE_LEVEL) || topicFilter.startsWith(MULTI_LEVEL))) {
+            return false;
+        }
+        int filterStart = 0;
+        int topicStart = 0;
+        while (true) {
+            int filterEnd = levelEnd(topicFilter, filterStart);
+            int filterLength = filterEnd - filterStart;
+            if (filterLength == 1 && topicFilter.charAt(filterStart) == '#') {
+                return true;
+            }
+            if (topicStart > topic.length()) {
+                return false;
+            }
+            int topicEnd = levelEnd(topic, topicStart);
+            boolean singleLevel = filterLength == 1 && topicFilter.charAt(filterStart) == '+';
+            if (!singleLevel && (filterLength != topicEnd - topicStart
+                    || !topicFilter.regionMatches(filterStart, topic, topicStart, filterLength))) {
+                return false;
+            }
+            if (filterEnd == topicFilter.length()) {
+                return topicEnd == topic.length();
+            }
+            filterStart = filterEnd + 1;
+            topicStart = topicEnd + 1;
+        }
+    }
+
+    private static int levelEnd(String topic, int start) {
+        int end = topic.indexOf('/', start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    private static final class Node<T> {
+
+        private final Node<T> parent;
+        private final String level;
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        private final List<T> values = new CopyOnWriteArrayList<>();
+
+        private Node(Node<T> parent, String level) {
+            this.parent = parent;
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionHealth;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionState;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every pooled connection connected. The first attempts run on the supervisor thread, so startup
+ * does not wait for an unreachable broker. A connection that drops, or cannot be established at
+ * startup, is retried with jittered exponential backoff: attempt {@code n} waits between half and
+ * all of {@code min(max-delay, initial-delay * 2^n)}, so a fleet of clients does not hammer a broker
+ * that is coming back. Once a subscriber connection is up again its active topic filters are
+ * re-subscribed; open streams are fed by the fan-out hub and simply resume.
+ */
+@Component
+public class ConnectionSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionSupervisor.class);
+
+    @Autowired
+    private MqttConnectionPool connectionPool;
+
+    @Autowired
+    private MqttSubscriber mqttSubscriber;
+
+    @Value("${mqtt.reconnect.initial-delay-ms}")
+    private long initialDelayMs;
+
+    @Value("${mqtt.reconnect.max-delay-ms}")
+    private long maxDelayMs;
+
+    private final List<Supervised> supervised = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ConnectionSupervisor() {
+    }
+
+    ConnectionSupervisor(MqttConnectionPool connectionPool, MqttSubscriber mqttSubscriber, long initialDelayMs,
+                         long maxDelayMs) {
+        this.connectionPool = connectionPool;
+        this.mqttSubscriber = mqttSubscriber;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mqtt-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (MqttConnection connection : connectionPool.getPublishers()) {
+            supervised.add(new Supervised(connection, "publisher"));
+        }
+        for (MqttConnection connection : connectionPool.getSubscribers()) {
+            supervised.add(new Supervised(connection, "subscriber"));
+        }
+        for (Supervised connection : supervised) {
+            connection.connection.setConnectionLostListener(connection::connectionLost);
+            scheduler.execute(() -> {
+                MqttException error = connection.attempt();
+                if (error != null) {
+                    logger.warn("MQTT connection {} failed at startup: {}", connection.connection.getClientId(), error.getMessage());
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public ConnectionHealth getHealth() {
+        List<ConnectionStatus> connections = supervised.stream().map(Supervised::status).toList();
+        long connected = connections.stream().filter(status -> status.state() == ConnectionState.CONNECTED).count();
+        String status = connected == connections.size() ? "UP" : connected > 0 ? "DEGRADED" : "DOWN";
+        return new ConnectionHealth(status, connections);
+    }
+
+    /**
+     * Disconnects every connection and stops reconnecting until {@link #reconnect()} is called.
+     */
+    public void disconnect() throws MqttException {
+        for (Supervised connection : supervised) {
+            connection.suspend();
+        }
+        connectionPool.disconnect();
+    }
+
+    /**
+     * Connects every connection that is down right away and restores its subscriptions. Connections
+     * that fail go back to reconnecting with backoff.
+     * @throws MqttException the first failure, after all connections have been attempted.
+     */
+    public void reconnect() throws MqttException {
+        MqttException firstError = null;
+        for (Supervised connection : supervised) {
+            MqttException error = connection.resume();
+            if (firstError == null) {
+                firstError = error;
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    private final class Supervised {
+
+        private final MqttConnection connection;
+        private final String role;
+
+        private ConnectionState state = ConnectionState.RECONNECTING;
+        private long since = System.currentTimeMillis();
+        private int attempts;
+        private String lastError;
+        private ScheduledFuture<?> retry;
+
+        Supervised(MqttConnection connection, String role) {
+            this.connection = connection;
+            this.role = role;
+        }
+
+        synchronized ConnectionStatus status() {
+            return new ConnectionStatus(connection.getClientId(), role, state, since, attempts, lastError);
+        }
+
+        synchronized void connectionLost(Throwable cause) {
+            if (state == ConnectionState.DISCONNECTED) {
+                return;
+            }
+            logger.warn("MQTT connection {} lost: {}", connection.getClientId(), cause.getMessage());
+            lastError = cause.getMessage();
+            transition(ConnectionState.RECONNECTING);
+            scheduleRetry();
+        }
+
+        /**
+         * @return the failure, or {@code null} if the connection is up with its subscriptions restored.
+         */
+        synchronized MqttException attempt() {
+            retry = null;
+            if (state == ConnectionState.DISCONNECTED) {
+                return null;
+            }
+            try {
+                if (!connection.isConnected()) {
+                    connection.connect();
+                }
+                if (role.equals("subscriber")) {
+                    mqttSubscriber.restoreSubscriptions(connection);
+                }
+            } catch (MqttException e) {
+                attempts++;
+                lastError = e.getMessage();
+                transition(ConnectionState.RECONNECTING);
+                scheduleRetry();
+                return e;
+            }
+            if (attempts > 0) {
+                logger.info("MQTT connection {} restored after {} failed attempts", connection.getClientId(), attempts);
+            }
+            attempts = 0;
+            lastError = null;
+            transition(ConnectionState.CONNECTED);
+            return null;
+        }
+
+        synchronized void suspend() {
+            cancelRetry();
+            transition(ConnectionState.DISCONNECTED);
+        }
+
+        synchronized MqttException resume() {
+            cancelRetry();
+            if (state == ConnectionState.DISCONNECTED) {
+                transition(ConnectionState.RECONNECTING);
+            }
+            return attempt();
+        }
+
+        private void scheduleRetry() {
+            if (retry != null) {
+                return;
+            }
+            long ceiling = Math.min(maxDelayMs, initialDelayMs << Math.min(attempts, 30));
+            long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+            logger.info("Reconnecting MQTT connection {} in {} ms", connection.getClientId(), delay);
+            retry = scheduler.schedule(this::attempt, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancelRetry() {
+            if (retry != null) {
+                retry.cancel(false);
+                retry = null;
+            }
+        }
+
+        private void transition(ConnectionState next) {
+            if (state != next) {
+                state = next;
+                since = System.currentTimeMillis();
+            }
+        }
+    }
+}
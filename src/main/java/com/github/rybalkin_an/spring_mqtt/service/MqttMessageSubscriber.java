@@ -5,30 +5,50 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Flow;
 
-public class MqttMessageSubscriber implements Flow.Subscriber<String> {
+/**
+ * Hands every item to a consumer, requesting demand in batches rather than one item at a time:
+ * {@code batchSize} up front, then topped up once three quarters of it has been consumed.
+ */
+public class MqttMessageSubscriber<T> implements Flow.Subscriber<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttMessageSubscriber.class);
 
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
     private Flow.Subscription subscription;
 
-    private final java.util.function.Consumer<String> messageConsumer;
+    private final java.util.function.Consumer<T> messageConsumer;
+
+    private final int batchSize;
+
+    private final int replenishThreshold;
+
+    private int consumed;
 
-    public MqttMessageSubscriber(java.util.function.Consumer<String> messageConsumer) {
+    public MqttMessageSubscriber(java.util.function.Consumer<T> messageConsumer) {
+        this(messageConsumer, DEFAULT_BATCH_SIZE);
+    }
+
+    public MqttMessageSubscriber(java.util.function.Consumer<T> messageConsumer, int batchSize) {
         this.messageConsumer = messageConsumer;
+        this.batchSize = batchSize;
+        this.replenishThreshold = Math.max(1, batchSize - (batchSize >> 2));
     }
 
     @Override
     public void onSubscribe(Flow.Subscription subscription) {
         this.subscription = subscription;
-        subscription.request(1);
+        subscription.request(batchSize);
         logger.info("Subscribed to the message stream.");
     }
 
     @Override
-    public void onNext(String item) {
-        logger.info("Received message: {}", item);
+    public void onNext(T item) {
         messageConsumer.accept(item);
-        subscription.request(1);
+        if (++consumed == replenishThreshold) {
+            consumed = 0;
+            subscription.request(replenishThreshold);
+        }
     }
 
     @Override
@@ -40,4 +60,10 @@ public class MqttMessageSubscriber implements Flow.Subscriber<String> {
     public void onComplete() {
         logger.info("Message stream complete.");
     }
+
+    public void cancel() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
 }
@@ -1,29 +1,213 @@
 package com.github.rybalkin_an.spring_mqtt.service;
 
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import com.github.rybalkin_an.spring_mqtt.codec.Envelope;
+import com.github.rybalkin_an.spring_mqtt.codec.PayloadBatch;
+import com.github.rybalkin_an.spring_mqtt.codec.PayloadCompression;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.logging.MessageLog;
+import com.github.rybalkin_an.spring_mqtt.metrics.MqttMetrics;
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import com.github.rybalkin_an.spring_mqtt.model.PublishRequest;
+import com.github.rybalkin_an.spring_mqtt.model.PublishResult;
+import com.github.rybalkin_an.spring_mqtt.tracing.LatencyTracker;
+import com.github.rybalkin_an.spring_mqtt.tracing.TraceClock;
+import com.github.rybalkin_an.spring_mqtt.wal.Outbox;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Publishes without blocking on the broker handshake. Each topic is always published over the same
+ * pooled connection, which keeps per-topic ordering while spreading topics over all connections.
+ */
 @Component
 public class MqttPublisher {
 
-    private static final Logger logger = LoggerFactory.getLogger(MqttPublisher.class);
+    private static final int BULK_CONCURRENCY = 1024;
+
+    @Autowired
+    private MqttConnectionPool connectionPool;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private MqttMetrics metrics;
 
     @Autowired
-    private MqttClient mqttClient;
+    private LatencyTracker latencyTracker;
 
+    @Autowired
+    private MessageLog messageLog;
+
+    @Autowired
+    private PayloadCompression payloadCompression;
+
+    /**
+     * Publishes and waits for the broker acknowledgement required by the QoS level.
+     */
     public void publish(String messageContent, String topic, int qos) throws MqttException {
-        publishMessage(messageContent, topic, qos);
-        logger.info("Message published to topic '{}': {}", topic, messageContent);
+        try {
+            publishAsync(messageContent, topic, qos).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MqttException mqttException) {
+                throw mqttException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the UTF-8 encoding of the message.
+     * @return a future completed once the broker has acknowledged the message according to its QoS.
+     */
+    public CompletableFuture<Void> publishAsync(String messageContent, String topic, int qos) {
+        return publishAsync(messageContent.getBytes(StandardCharsets.UTF_8), topic, qos);
+    }
+
+    /**
+     * Publishes the payload as-is, without copying it.
+     * @return a future completed once the broker has acknowledged the message according to its QoS.
+     */
+    public CompletableFuture<Void> publishAsync(byte[] payload, String topic, int qos) {
+        return connectionPool.forPublish(topic).publish(topic, payload, qos).whenComplete((ignored, error) -> {
+            if (error == null) {
+                messageLog.published(topic, payload);
+            }
+        });
+    }
+
+    /**
+     * Publishes like {@link #publishAsync(byte[], String, int)}, but does not lose the message to a
+     * broker outage: while the connection for the topic is down, or earlier messages are still
+     * waiting in the {@link Outbox}, the message is appended to the outbox instead. The same happens
+     * if the connection drops before the broker acknowledges it. Payloads of topics configured for
+     * compression are compressed first, see {@link PayloadCompression}.
+     * @return a future completed with the outcome, failed only if the message could neither be
+     * published nor buffered.
+     */
+    public CompletableFuture<PublishOutcome> publishDurable(byte[] payload, String topic, int qos) {
+        return publishFramed(payloadCompression.frame(topic, payload, 0, 0), topic, qos);
+    }
+
+    /**
+     * Publishes like {@link #publishDurable(byte[], String, int)}, wrapped in an {@link Envelope}
+     * stamped with the current time, so that subscribers of this application can trace its latency.
+     */
+    public CompletableFuture<PublishOutcome> publishTraced(byte[] payload, String topic, int qos) {
+        return publishStamped(payload, topic, qos, Envelope.TRACED, TraceClock.epochMicros());
+    }
+
+    /**
+     * Publishes the payloads as one message, like {@link #publishDurable(byte[], String, int)}, in an
+     * {@link Envelope} flagged {@link Envelope#BATCH}. Subscribers of this application receive them as
+     * separate messages again.
+     * @param originMicros origin timestamp of the batch for latency tracing, 0 for an untraced batch
+     */
+    public CompletableFuture<PublishOutcome> publishBatch(List<byte[]> payloads, String topic, int qos, long originMicros) {
+        int flags = originMicros != 0 ? Envelope.BATCH | Envelope.TRACED : Envelope.BATCH;
+        return publishStamped(PayloadBatch.encode(payloads), topic, qos, flags, originMicros);
+    }
+
+    private CompletableFuture<PublishOutcome> publishStamped(byte[] payload, String topic, int qos, int flags, long originMicros) {
+        byte[] framed = payloadCompression.frame(topic, payload, flags, originMicros);
+        return publishFramed(framed, topic, qos).whenComplete((outcome, error) -> {
+            if (originMicros != 0 && outcome == PublishOutcome.PUBLISHED) {
+                latencyTracker.recordPublished(originMicros);
+            }
+        });
+    }
+
+    private CompletableFuture<PublishOutcome> publishFramed(byte[] payload, String topic, int qos) {
+        long startNanos = System.nanoTime();
+        return routeDurable(payload, topic, qos).whenComplete((outcome, error) -> {
+            metrics.recordPublish(qos, outcome, startNanos);
+            if (error != null) {
+                messageLog.failed(topic, error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+    }
+
+    private CompletableFuture<PublishOutcome> routeDurable(byte[] payload, String topic, int qos) {
+        if (!outbox.isEnabled()) {
+            return publishAsync(payload, topic, qos).thenApply(ignored -> PublishOutcome.PUBLISHED);
+        }
+        if (outbox.hasBacklog() || !connectionPool.forPublish(topic).isConnected()) {
+            return buffer(payload, topic, qos);
+        }
+        return publishAsync(payload, topic, qos).handle((ignored, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(PublishOutcome.PUBLISHED);
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            return MqttConnection.isConnectionFailure(cause)
+                    ? buffer(payload, topic, qos)
+                    : CompletableFuture.<PublishOutcome>failedFuture(cause);
+        }).thenCompose(outcome -> outcome);
+    }
+
+    private CompletableFuture<PublishOutcome> buffer(byte[] payload, String topic, int qos) {
+        try {
+            outbox.append(payload, topic, qos);
+            messageLog.buffered(topic, payload);
+            return CompletableFuture.completedFuture(PublishOutcome.BUFFERED);
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public Mono<PublishOutcome> publishReactive(String messageContent, String topic, int qos, boolean traced) {
+        return publishReactive(messageContent.getBytes(StandardCharsets.UTF_8), topic, qos, traced);
+    }
+
+    public Mono<PublishOutcome> publishReactive(byte[] payload, String topic, int qos, boolean traced) {
+        return Mono.fromFuture(() -> traced ? publishTraced(payload, topic, qos) : publishDurable(payload, topic, qos));
+    }
+
+    /**
+     * Publishes every record as soon as it is decoded, pipelined over the pooled connections, and
+     * completes once all of them have been acknowledged, buffered or have failed. A failed record does
+     * not stop the others. At most {@link #BULK_CONCURRENCY} records are awaiting their outcome at a
+     * time; beyond that, reading the records is paused.
+     *
+     * @param defaultQos QoS for records that do not specify one
+     * @return one result per record, in order
+     */
+    public Mono<List<PublishResult>> publishAll(Flux<PublishRequest> requests, int defaultQos) {
+        return requests.index()
+                .flatMapSequential(indexed -> Mono.fromFuture(
+                        publishRecord(indexed.getT1().intValue(), indexed.getT2(), defaultQos)), BULK_CONCURRENCY)
+                .collectList();
+    }
+
+    private CompletableFuture<PublishResult> publishRecord(int index, PublishRequest request, int defaultQos) {
+        String topic = request.getTopic();
+        if (topic == null || topic.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    PublishResult.failed(index, topic, new IllegalArgumentException("topic is required")));
+        }
+        int qos = request.getQos() != null ? request.getQos() : defaultQos;
+        try {
+            MqttConnection.validatePublish(topic, qos);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(PublishResult.failed(index, topic, e));
+        }
+        byte[] payload = request.payloadAsString().getBytes(StandardCharsets.UTF_8);
+        return publishDurable(payload, topic, qos).handle((outcome, error) -> error == null
+                ? PublishResult.of(index, topic, outcome)
+                : PublishResult.failed(index, topic, error instanceof CompletionException ? error.getCause() : error));
     }
 
-    private void publishMessage(String messageContent, String topic, int qos) throws MqttException {
-        MqttMessage message = new MqttMessage(messageContent.getBytes());
-        message.setQos(qos);
-        mqttClient.publish(topic, message);
+    public int getInflightCount() {
+        return connectionPool.getPublishers().stream().mapToInt(MqttConnection::getInflightCount).sum();
     }
 }
@@ -1,51 +1,188 @@
 package com.github.rybalkin_an.spring_mqtt.service;
 
-import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
+import com.github.rybalkin_an.spring_mqtt.codec.Envelope;
+import com.github.rybalkin_an.spring_mqtt.codec.PayloadBatch;
+import com.github.rybalkin_an.spring_mqtt.codec.PayloadCompression;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.fanout.FanOutHub;
+import com.github.rybalkin_an.spring_mqtt.logging.MessageLog;
+import com.github.rybalkin_an.spring_mqtt.metrics.MqttMetrics;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.pipeline.InboundPipeline;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import com.github.rybalkin_an.spring_mqtt.tracing.LatencyTracker;
+import com.github.rybalkin_an.spring_mqtt.tracing.TraceClock;
+import jakarta.annotation.PostConstruct;
+import org.eclipse.paho.client.mqttv3.MqttException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Flow;
-import java.util.concurrent.SubmissionPublisher;
 
 @Component
-public class MqttSubscriber implements MqttCallback {
+public class MqttSubscriber {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttSubscriber.class);
 
     @Autowired
-    private MqttClient mqttClient;
+    private MqttConnectionPool connectionPool;
 
-    private final SubmissionPublisher<String> publisher = new SubmissionPublisher<>();
+    @Autowired
+    private FanOutHub<InboundMessage> fanOutHub;
+
+    @Autowired
+    private InboundPipeline inboundPipeline;
+
+    @Autowired
+    private MqttMetrics metrics;
+
+    @Autowired
+    private LatencyTracker latencyTracker;
 
-    public void subscribe(String topic, int qos) throws Exception {
-        mqttClient.subscribe(topic, qos);
-        logger.info("Subscribed to topic: {} with QoS: {}", topic, qos);
-        mqttClient.setCallback(this);
+    @Autowired
+    private MessageLog messageLog;
+
+    @Autowired
+    private PayloadCompression payloadCompression;
+
+    /**
+     * Active streams and QoS per topic filter. The broker subscription is made by the first stream on
+     * a filter and released by the last one, and restored whenever its connection comes back.
+     */
+    private final Map<String, ActiveFilter> activeFilters = new HashMap<>();
+
+    public MqttSubscriber() {
     }
 
-    @Override
-    public void connectionLost(Throwable cause) {
-        logger.warn("Connection lost: {}", cause.getMessage());
+    /**
+     * Tracks broker subscriptions only, without delivering messages.
+     */
+    MqttSubscriber(MqttConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
     }
 
-    @Override
-    public void messageArrived(String topic, MqttMessage message) {
-        String receivedMessage = new String(message.getPayload());
-        logger.info("Message received from topic {}: {}", topic, receivedMessage);
-        publisher.submit(receivedMessage);
+    @PostConstruct
+    void registerListener() {
+        for (MqttConnection connection : connectionPool.getSubscribers()) {
+            connection.setMessageListener(this::messageArrived);
+        }
     }
 
-    @Override
-    public void deliveryComplete(IMqttDeliveryToken token) {
+    /**
+     * Registers a stream on the topic filter. If the connection for the filter is down, the broker
+     * subscription is deferred until it is restored. A shared subscription {@code $share/<group>/<filter>}
+     * makes the broker split the filter's messages between all subscribers of the group, e.g. the
+     * instances of this service.
+     */
+    public synchronized void subscribe(String topic, int qos) throws Exception {
+        TopicTrie.validateFilter(TopicTrie.unshared(topic));
+        if (qos < 0 || qos > 2) {
+            throw new IllegalArgumentException("QoS must be 0, 1 or 2: " + qos);
+        }
+        ActiveFilter filter = activeFilters.get(topic);
+        if (filter == null) {
+            MqttConnection connection = connectionPool.forSubscription(topic);
+            if (connection.isConnected()) {
+                connection.subscribe(topic, qos);
+                logger.info("Subscribed to topic: {} with QoS: {}", topic, qos);
+            } else {
+                logger.info("Subscription to topic {} deferred until {} reconnects", topic, connection.getClientId());
+            }
+            filter = new ActiveFilter(qos);
+            activeFilters.put(topic, filter);
+        }
+        filter.streams++;
     }
 
-    public void subscribeToMessages(Flow.Subscriber<String> subscriber) {
-        publisher.subscribe(subscriber);
+    public synchronized void unsubscribe(String topic) {
+        ActiveFilter filter = activeFilters.get(topic);
+        if (filter == null) {
+            return;
+        }
+        if (--filter.streams > 0) {
+            return;
+        }
+        activeFilters.remove(topic);
+        try {
+            connectionPool.forSubscription(topic).unsubscribe(topic);
+            logger.info("Unsubscribed from topic: {}", topic);
+        } catch (MqttException e) {
+            logger.warn("Failed to unsubscribe from topic {}: {}", topic, e.getMessage());
+        }
     }
-}
 
+    /**
+     * Re-subscribes every active filter that belongs to the connection, after it has (re)connected.
+     */
+    public synchronized void restoreSubscriptions(MqttConnection connection) throws MqttException {
+        for (Map.Entry<String, ActiveFilter> entry : activeFilters.entrySet()) {
+            if (connectionPool.forSubscription(entry.getKey()) == connection) {
+                connection.subscribe(entry.getKey(), entry.getValue().qos);
+                logger.info("Restored subscription to topic: {} with QoS: {}", entry.getKey(), entry.getValue().qos);
+            }
+        }
+    }
+
+    public void messageArrived(String topic, byte[] payload, boolean duplicate) {
+        messageLog.received(topic, payload);
+        metrics.recordInbound(topic, payload.length);
+        if (!Envelope.isEnvelope(payload)) {
+            inboundPipeline.submit(new InboundMessage(topic, payload, 0, 0, duplicate));
+            return;
+        }
+        for (InboundMessage message : unwrap(topic, payload, duplicate)) {
+            inboundPipeline.submit(message);
+        }
+    }
+
+    /**
+     * Strips the {@link Envelope}, inflates a compressed body and splits a batch into its messages.
+     * A malformed envelope is delivered as-is rather than thrown, which would make Paho drop the
+     * connection; a malformed batch is not partially delivered.
+     */
+    private List<InboundMessage> unwrap(String topic, byte[] payload, boolean duplicate) {
+        try {
+            Envelope envelope = Envelope.parse(payload);
+            byte[] body = payloadCompression.body(envelope);
+            List<byte[]> bodies = envelope.isBatch() ? PayloadBatch.decode(body) : List.of(body);
+            long receivedMicros = 0;
+            if (envelope.isTraced()) {
+                receivedMicros = TraceClock.epochMicros();
+                latencyTracker.recordReceived(envelope.originMicros(), receivedMicros);
+            }
+            List<InboundMessage> messages = new ArrayList<>(bodies.size());
+            for (byte[] message : bodies) {
+                messages.add(new InboundMessage(topic, message, envelope.originMicros(), receivedMicros, duplicate));
+            }
+            return messages;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Malformed envelope on topic {}: {}", topic, e.getMessage());
+            return List.of(new InboundMessage(topic, payload, 0, 0, duplicate));
+        }
+    }
+
+    /**
+     * Delivers messages whose topic matches the topic filter, or the filter of a shared subscription.
+     * The caller is responsible for the broker subscription, see {@link #subscribe(String, int)}.
+     */
+    public void subscribeToMessages(String topicFilter, Flow.Subscriber<? super InboundMessage> subscriber) {
+        fanOutHub.subscribe(TopicTrie.unshared(topicFilter), subscriber);
+    }
+
+    private static final class ActiveFilter {
+
+        private final int qos;
+        private int streams;
+
+        private ActiveFilter(int qos) {
+            this.qos = qos;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import com.github.rybalkin_an.spring_mqtt.tracing.TraceClock;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces publishes to topics matching one of the {@code batch.topics} filters into one MQTT message
+ * per topic, see {@link MqttPublisher#publishBatch}. A batch is published once it holds
+ * {@code batch.max-messages} payloads or its first payload has waited {@code batch.max-delay-ms},
+ * whichever comes first. All payloads of a batch share its outcome. Publishes to other topics are
+ * passed on one by one.
+ * <p>
+ * Batches are handed to the publisher from the single {@code publish-batcher} thread in the order
+ * they were opened, so a batch flushed by its size cannot overtake an earlier one flushed by its timer.
+ */
+@Component
+public class PublishBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PublishBatcher.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    @Autowired
+    private MqttPublisher mqttPublisher;
+
+    @Value("${batch.topics}")
+    private List<String> topics;
+
+    @Value("${batch.max-messages}")
+    private int maxMessages;
+
+    @Value("${batch.max-delay-ms}")
+    private long maxDelayMs;
+
+    private TopicTrie<String> batchedTopics;
+
+    private final Map<String, Batch> openBatches = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "publish-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PublishBatcher() {
+    }
+
+    PublishBatcher(MqttPublisher mqttPublisher, List<String> topics, int maxMessages, long maxDelayMs) {
+        this.mqttPublisher = mqttPublisher;
+        this.topics = topics;
+        this.maxMessages = maxMessages;
+        this.maxDelayMs = maxDelayMs;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        batchedTopics = TopicTrie.of(topics);
+    }
+
+    @PreDestroy
+    void stop() {
+        for (Batch batch : openBatches.values()) {
+            flush(batch);
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Batches still publishing after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isBatched(String topic) {
+        return batchedTopics.matchesAny(topic);
+    }
+
+    /**
+     * Publishes like {@link MqttPublisher#publishDurable} or, if traced, {@link MqttPublisher#publishTraced},
+     * as part of the topic's current batch if the topic is batched.
+     * @return a future completed with the outcome of the batch the payload was published with.
+     */
+    public CompletableFuture<PublishOutcome> publish(byte[] payload, String topic, int qos, boolean traced) {
+        if (!isBatched(topic)) {
+            return traced ? mqttPublisher.publishTraced(payload, topic, qos) : mqttPublisher.publishDurable(payload, topic, qos);
+        }
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(topic, key -> new Batch(key, qos));
+            if (batch.qos != qos) {
+                // Payloads of a batch share one QoS, so the open batch goes out first
+                flush(batch);
+                continue;
+            }
+            CompletableFuture<PublishOutcome> outcome = batch.add(payload, traced);
+            if (outcome != null) {
+                if (batch.isFull()) {
+                    flush(batch);
+                }
+                return outcome;
+            }
+            // Flushed concurrently, try the next batch
+        }
+    }
+
+    private void flush(Batch batch) {
+        // A topic's next batch is only opened once this one is removed, so queueing the publish under
+        // the same lock keeps the topic's batches in order
+        synchronized (flushLock) {
+            openBatches.remove(batch.topic, batch);
+            List<byte[]> payloads;
+            long originMicros;
+            synchronized (batch) {
+                if (batch.closed) {
+                    return;
+                }
+                batch.closed = true;
+                payloads = batch.payloads;
+                originMicros = batch.originMicros;
+            }
+            try {
+                scheduler.execute(() -> publish(batch, payloads, originMicros));
+            } catch (RejectedExecutionException e) {
+                // Shutting down: publish on the calling thread
+                publish(batch, payloads, originMicros);
+            }
+        }
+    }
+
+    private void publish(Batch batch, List<byte[]> payloads, long originMicros) {
+        try {
+            mqttPublisher.publishBatch(payloads, batch.topic, batch.qos, originMicros).whenComplete((outcome, error) -> {
+                if (error != null) {
+                    batch.outcome.completeExceptionally(error);
+                } else {
+                    batch.outcome.complete(outcome);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish batch of {} messages to topic {}: {}", payloads.size(), batch.topic, e.getMessage());
+            batch.outcome.completeExceptionally(e);
+        }
+    }
+
+    private final class Batch {
+
+        private final String topic;
+        private final int qos;
+        private final List<byte[]> payloads = new ArrayList<>();
+        private final CompletableFuture<PublishOutcome> outcome = new CompletableFuture<>();
+        private long originMicros;
+        private boolean closed;
+
+        Batch(String topic, int qos) {
+            this.topic = topic;
+            this.qos = qos;
+            try {
+                scheduler.schedule(() -> flush(this), maxDelayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: isFull() has the batch flushed with its first payload
+            }
+        }
+
+        /**
+         * @return the batch's outcome, or {@code null} if it has already been flushed.
+         */
+        synchronized CompletableFuture<PublishOutcome> add(byte[] payload, boolean traced) {
+            if (closed) {
+                return null;
+            }
+            if (traced && originMicros == 0) {
+                // Latency of a traced batch is measured from its oldest traced payload
+                originMicros = TraceClock.epochMicros();
+            }
+            payloads.add(payload);
+            return outcome;
+        }
+
+        synchronized boolean isFull() {
+            return payloads.size() >= maxMessages || scheduler.isShutdown();
+        }
+    }
+}
@@ -1,103 +1,227 @@
 package com.github.rybalkin_an.spring_mqtt.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodec;
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
 import com.github.rybalkin_an.spring_mqtt.config.MqttConfig;
-import com.github.rybalkin_an.spring_mqtt.model.Sensor;
-import org.eclipse.paho.client.mqttv3.MqttException;
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import com.github.rybalkin_an.spring_mqtt.model.SimulationSettings;
+import com.github.rybalkin_an.spring_mqtt.model.SimulationStats;
+import com.github.rybalkin_an.spring_mqtt.model.ValueDistribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.UUID.randomUUID;
 
+/**
+ * Simulates any number of sensors publishing at a configurable aggregate rate. Publishing is paced
+ * against the time elapsed since the start of the run rather than by sleeping between messages,
+ * so the achieved rate does not drift with publish latency or scheduling jitter.
+ */
 @Component
 public class SensorService {
 
     private static final Logger logger = LoggerFactory.getLogger(SensorService.class);
 
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final double SINE_PERIOD_SECONDS = 60;
+
     @Autowired
-    private MqttPublisher mqttPublisher;
+    private PublishBatcher publishBatcher;
 
     @Autowired
     private MqttConfig mqttConfig;
 
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    /**
+     * Publishes awaiting acknowledgement above which the simulator skips readings instead of queueing them.
+     */
+    @Value("${sensor.simulator.max-outstanding}")
+    private int maxOutstanding;
+
     private final AtomicBoolean isStreaming = new AtomicBoolean(false);
 
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private volatile Simulation simulation;
 
-    private Sensor create() {
-        Sensor sensor = new Sensor();
+    private SensorReading create() {
+        SensorReading sensor = new SensorReading();
         sensor.setUuid(randomUUID());
         return sensor;
     }
 
     /**
-     * Generates a random temperature value
-     * @return BigDecimal value randomly selected from the range -20.0 to 50.0.
+     * Generates a temperature value
+     * @return value from the range -20.0 to 50.0, shaped by the distribution.
      */
-    private BigDecimal getRandomTemperature() {
-        return BigDecimal.valueOf(-20 + (Math.random() * 70));
+    private double getTemperature(ValueDistribution distribution, double phase, double elapsedSeconds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (distribution) {
+            case UNIFORM -> -20 + (random.nextDouble() * 70);
+            case GAUSSIAN -> Math.max(-20, Math.min(50, 15 + random.nextGaussian() * 10));
+            case SINE -> 15 + 35 * Math.sin(2 * Math.PI * elapsedSeconds / SINE_PERIOD_SECONDS + phase);
+        };
     }
 
-    private Sensor setSensorTemp(Sensor sensor) {
-        LocalDateTime timeStamp = LocalDateTime.now();
-        sensor.setTimestamp(timeStamp.format(formatter));
-        sensor.setValue(getRandomTemperature());
+    private SensorReading setSensorTemp(SensorReading sensor, double value) {
+        sensor.setEpochMillis(System.currentTimeMillis());
+        sensor.setValue(value);
         return sensor;
     }
 
-    private void streamSensorValues(AtomicBoolean isStreaming) {
-        Sensor sensor = create();
-        ObjectMapper objectMapper = new ObjectMapper();
-        while (isStreaming.get()) {
-            setSensorTemp(sensor);
-
-            try {
-                String sensorData = objectMapper.writeValueAsString(sensor);
-                mqttPublisher.publish(sensorData, mqttConfig.getTopic(), mqttConfig.getQos());
-                logger.info("Published sensor data: {}", sensorData);
-            } catch (JsonProcessingException e) {
-                logger.error("Failed to serialize sensor data: {}", e.getMessage(), e);
-                break;
-            } catch (MqttException e) {
-                logger.error("Failed to publish sensor data: {}", e.getMessage(), e);
-                break;
-            }
-
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.warn("Streaming interrupted: {}", e.getMessage());
-                break;
-            }
-        }
+    public void startStreaming() {
+        startStreaming(new SimulationSettings());
     }
 
-    public void startStreaming() {
-        if (!isStreaming.get()) {
-            isStreaming.set(true);
-            Thread streamingThread = new Thread(() -> streamSensorValues(isStreaming));
-            streamingThread.start();
-            logger.info("Sensor streaming started.");
+    public void startStreaming(SimulationSettings settings) {
+        // The rate drives the publish interval, so NaN and infinity are rejected too
+        if (settings.getSensors() <= 0 || settings.getRate() <= 0 || !Double.isFinite(settings.getRate())) {
+            throw new IllegalArgumentException("Sensor count must be positive and rate a positive finite number.");
+        }
+        if (isStreaming.compareAndSet(false, true)) {
+            simulation = new Simulation(settings);
+            simulation.start();
+            logger.info("Sensor streaming started: {} sensors at {} msg/s.", settings.getSensors(), settings.getRate());
         } else {
             logger.warn("Sensor streaming is already running.");
         }
     }
 
     public void stopStreaming() {
-        if (isStreaming.get()) {
-            isStreaming.set(false);
+        if (isStreaming.compareAndSet(true, false)) {
+            simulation.stop();
             logger.info("Sensor streaming stopping...");
         } else {
             logger.warn("Sensor streaming is not running.");
         }
     }
+
+    public SimulationStats getStats() {
+        Simulation current = simulation;
+        return current != null ? current.stats() : new SimulationStats(false, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    private final class Simulation implements Runnable {
+
+        private final SimulationSettings settings;
+        private final SensorReading[] sensors;
+        private final String[] topics;
+        private final SensorCodec[] codecs;
+        private final double[] phases;
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong buffered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong outstanding = new AtomicLong();
+
+        private volatile long startNanos;
+        private volatile long stopNanos;
+        private long scheduled;
+        private int nextSensor;
+
+        Simulation(SimulationSettings settings) {
+            this.settings = settings;
+            int count = settings.getSensors();
+            String topicPattern = settings.getTopic() != null ? settings.getTopic() : mqttConfig.getTopic();
+            this.sensors = new SensorReading[count];
+            this.topics = new String[count];
+            this.codecs = new SensorCodec[count];
+            this.phases = new double[count];
+            for (int i = 0; i < count; i++) {
+                sensors[i] = create();
+                topics[i] = topicPattern
+                        .replace("{index}", Integer.toString(i))
+                        .replace("{uuid}", sensors[i].getUuid().toString());
+                codecs[i] = sensorCodecs.codecFor(topics[i]);
+                phases[i] = 2 * Math.PI * i / count;
+            }
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            long period = Math.max(MIN_TICK_NANOS, (long) (TimeUnit.SECONDS.toNanos(1) / settings.getRate()));
+            scheduler.scheduleAtFixedRate(this, 0, period, TimeUnit.NANOSECONDS);
+        }
+
+        void stop() {
+            stopNanos = System.nanoTime();
+            scheduler.shutdown();
+        }
+
+        /**
+         * Publishes every reading due by now. If the tick ran late by more than a second's worth of
+         * readings, the excess is skipped rather than sent as one burst.
+         */
+        @Override
+        public void run() {
+            try {
+                double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+                long due = (long) (elapsedSeconds * settings.getRate()) + 1 - scheduled;
+                long burstLimit = Math.max(1, (long) settings.getRate());
+                if (due > burstLimit) {
+                    skipped.addAndGet(due - burstLimit);
+                    scheduled += due - burstLimit;
+                    due = burstLimit;
+                }
+                for (long i = 0; i < due && isStreaming.get(); i++) {
+                    publishNext(elapsedSeconds);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Sensor simulator tick failed: {}", e.getMessage(), e);
+            }
+        }
+
+        private void publishNext(double elapsedSeconds) {
+            int index = nextSensor;
+            nextSensor = index + 1 == sensors.length ? 0 : index + 1;
+            scheduled++;
+            if (outstanding.get() >= maxOutstanding) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            SensorReading sensor = setSensorTemp(sensors[index], getTemperature(settings.getDistribution(), phases[index], elapsedSeconds));
+            byte[] sensorData = codecs[index].encode(sensor);
+
+            outstanding.incrementAndGet();
+            String topic = topics[index];
+            int qos = mqttConfig.getQos();
+            publishBatcher.publish(sensorData, topic, qos, settings.isTrace()).whenComplete((outcome, error) -> {
+                outstanding.decrementAndGet();
+                if (outcome == PublishOutcome.PUBLISHED) {
+                    published.incrementAndGet();
+                } else if (outcome == PublishOutcome.BUFFERED) {
+                    buffered.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+
+        SimulationStats stats() {
+            boolean running = stopNanos == 0;
+            double elapsedSeconds = ((running ? System.nanoTime() : stopNanos) - startNanos) / 1e9;
+            long publishedCount = published.get();
+            return new SimulationStats(running, sensors.length, settings.getRate(), publishedCount, buffered.get(), failed.get(),
+                    skipped.get(), elapsedSeconds, elapsedSeconds > 0 ? publishedCount / elapsedSeconds : 0);
+        }
+    }
 }
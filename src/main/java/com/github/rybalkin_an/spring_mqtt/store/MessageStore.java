@@ -0,0 +1,89 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.routing.TopicTrie;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last-value cache and short history of every topic received from the broker, so that new streams
+ * and dashboards do not have to wait for the next message. Recording is a map lookup and an array
+ * store on the receiving thread.
+ */
+@Component
+public class MessageStore {
+
+    @Value("${store.messages-per-topic}")
+    private int messagesPerTopic;
+
+    @Value("${store.max-topics}")
+    private int maxTopics;
+
+    private final Map<String, TopicHistory> topics = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public void record(InboundMessage message) {
+        TopicHistory history = topics.get(message.topic());
+        if (history == null) {
+            if (topics.size() >= maxTopics) {
+                rejectedCount.incrementAndGet();
+                return;
+            }
+            history = topics.computeIfAbsent(message.topic(), topic -> new TopicHistory(Math.max(1, messagesPerTopic)));
+        }
+        history.add(message, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the last message of every topic matching the filter.
+     */
+    public List<StoredMessage> latest(String topicFilter) {
+        TopicTrie.validateFilter(topicFilter);
+        List<StoredMessage> latest = new ArrayList<>();
+        topics.forEach((topic, history) -> {
+            if (TopicTrie.matches(topicFilter, topic)) {
+                StoredMessage message = history.latest();
+                if (message != null) {
+                    latest.add(message);
+                }
+            }
+        });
+        latest.sort(Comparator.comparingLong(StoredMessage::receivedAt));
+        return latest;
+    }
+
+    /**
+     * @return up to {@code limitPerTopic} of the most recent messages of every topic matching the
+     * filter, oldest first.
+     */
+    public List<StoredMessage> recent(String topicFilter, int limitPerTopic) {
+        TopicTrie.validateFilter(topicFilter);
+        List<StoredMessage> recent = new ArrayList<>();
+        topics.forEach((topic, history) -> {
+            if (TopicTrie.matches(topicFilter, topic)) {
+                recent.addAll(history.recent(limitPerTopic));
+            }
+        });
+        recent.sort(Comparator.comparingLong(StoredMessage::receivedAt));
+        return recent;
+    }
+
+    public int getTopicCount() {
+        return topics.size();
+    }
+
+    /**
+     * @return number of messages not kept because {@code store.max-topics} was reached.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
+import com.github.rybalkin_an.spring_mqtt.config.FanOutConfig;
+import com.github.rybalkin_an.spring_mqtt.config.MqttConfig;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import com.github.rybalkin_an.spring_mqtt.model.SeriesSlice;
+import com.github.rybalkin_an.spring_mqtt.service.MqttMessageSubscriber;
+import com.github.rybalkin_an.spring_mqtt.service.MqttSubscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last {@code store.points-per-sensor} readings of every sensor publishing on
+ * {@code store.sensor-topic}, decoded off the receiving thread from its own fan-out subscription.
+ */
+@Component
+public class SensorHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorHistoryStore.class);
+
+    @Autowired
+    private MqttSubscriber mqttSubscriber;
+
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    @Autowired
+    private MqttConfig mqttConfig;
+
+    @Autowired
+    private FanOutConfig fanOutConfig;
+
+    @Value("${store.sensor-topic}")
+    private String topic;
+
+    @Value("${store.points-per-sensor}")
+    private int pointsPerSensor;
+
+    @Value("${store.max-sensors}")
+    private int maxSensors;
+
+    private final Map<UUID, SensorSeries> sensors = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    // Only touched by the hub's drain of our single subscription, which never runs concurrently
+    private final SensorReading reading = new SensorReading();
+
+    private MqttMessageSubscriber<InboundMessage> messageSubscriber;
+
+    @PostConstruct
+    void start() {
+        if (topic.isBlank() || pointsPerSensor <= 0) {
+            return;
+        }
+        messageSubscriber = new MqttMessageSubscriber<>(this::accept, fanOutConfig.getDemandBatch());
+        mqttSubscriber.subscribeToMessages(topic, messageSubscriber);
+        try {
+            mqttSubscriber.subscribe(topic, mqttConfig.getQos());
+        } catch (Exception e) {
+            logger.warn("Failed to subscribe to {} for sensor history: {}", topic, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (messageSubscriber != null) {
+            messageSubscriber.cancel();
+            mqttSubscriber.unsubscribe(topic);
+        }
+    }
+
+    void accept(InboundMessage message) {
+        reading.setUuidMostSignificantBits(0);
+        reading.setUuidLeastSignificantBits(0);
+        reading.setValue(Double.NaN);
+        try {
+            sensorCodecs.decode(message.payload(), reading);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Skipping non-sensor message on {}: {}", message.topic(), e.getMessage());
+            rejectedCount.incrementAndGet();
+            return;
+        }
+        if (reading.getUuidMostSignificantBits() == 0 && reading.getUuidLeastSignificantBits() == 0) {
+            rejectedCount.incrementAndGet();
+            return;
+        }
+        UUID uuid = reading.getUuid();
+        SensorSeries series = sensors.get(uuid);
+        if (series == null) {
+            if (sensors.size() >= maxSensors) {
+                rejectedCount.incrementAndGet();
+                return;
+            }
+            series = sensors.computeIfAbsent(uuid, key -> new SensorSeries(key, pointsPerSensor));
+        }
+        series.add(reading.getEpochMillis(), reading.getValue());
+    }
+
+    /**
+     * @return the sensor's newest {@code limit} readings, or {@code null} if the sensor is unknown.
+     */
+    public SeriesSlice last(UUID uuid, int limit) {
+        SensorSeries series = sensors.get(uuid);
+        return series == null ? null : series.last(limit);
+    }
+
+    /**
+     * @return the sensor's readings with {@code from <= epochMillis < to}, or {@code null} if the sensor is unknown.
+     */
+    public SeriesSlice range(UUID uuid, long from, long to) {
+        SensorSeries series = sensors.get(uuid);
+        return series == null ? null : series.range(from, to);
+    }
+
+    public int getSensorCount() {
+        return sensors.size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
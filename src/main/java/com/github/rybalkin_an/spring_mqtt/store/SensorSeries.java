@@ -0,0 +1,80 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.model.SeriesSlice;
+
+import java.util.UUID;
+
+/**
+ * Recent readings of one sensor in two parallel primitive rings, 16 bytes per point and no object
+ * per reading. Timestamps are the readings' own, clamped so that they never decrease; this keeps
+ * the ring sorted for range queries.
+ */
+class SensorSeries {
+
+    private final UUID uuid;
+    private final long[] timestamps;
+    private final double[] values;
+    private long written;
+
+    SensorSeries(UUID uuid, int capacity) {
+        this.uuid = uuid;
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    synchronized void add(long epochMillis, double value) {
+        if (written > 0) {
+            epochMillis = Math.max(epochMillis, timestamps[position(written - 1)]);
+        }
+        int position = position(written++);
+        timestamps[position] = epochMillis;
+        values[position] = value;
+    }
+
+    synchronized SeriesSlice last(int limit) {
+        int count = (int) Math.min(Math.min(limit, timestamps.length), written);
+        return slice(written - count, written);
+    }
+
+    /**
+     * @return the readings with {@code from <= timestamp < to}, oldest first.
+     */
+    synchronized SeriesSlice range(long from, long to) {
+        long oldest = Math.max(0, written - timestamps.length);
+        return slice(firstAtOrAfter(oldest, from), firstAtOrAfter(oldest, to));
+    }
+
+    /**
+     * Binary search over the logical sequence {@code [oldest, written)}.
+     */
+    private long firstAtOrAfter(long oldest, long epochMillis) {
+        long low = oldest;
+        long high = written;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamps[position(middle)] < epochMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private SeriesSlice slice(long from, long to) {
+        int count = (int) Math.max(0, to - from);
+        long[] sliceTimestamps = new long[count];
+        double[] sliceValues = new double[count];
+        int start = position(from);
+        int firstPart = Math.min(count, timestamps.length - start);
+        System.arraycopy(timestamps, start, sliceTimestamps, 0, firstPart);
+        System.arraycopy(values, start, sliceValues, 0, firstPart);
+        System.arraycopy(timestamps, 0, sliceTimestamps, firstPart, count - firstPart);
+        System.arraycopy(values, 0, sliceValues, firstPart, count - firstPart);
+        return new SeriesSlice(uuid, sliceTimestamps, sliceValues);
+    }
+
+    private int position(long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+
+/**
+ * A message kept by the {@link MessageStore} with the time it was received, in epoch milliseconds.
+ */
+public record StoredMessage(long receivedAt, InboundMessage message) {
+}
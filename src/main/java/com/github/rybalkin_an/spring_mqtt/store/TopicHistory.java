@@ -0,0 +1,49 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent messages of one topic in a fixed-size ring, oldest overwritten first. The newest
+ * entry doubles as the topic's last value.
+ */
+class TopicHistory {
+
+    private final InboundMessage[] messages;
+    private final long[] receivedAt;
+    private long written;
+
+    TopicHistory(int capacity) {
+        this.messages = new InboundMessage[capacity];
+        this.receivedAt = new long[capacity];
+    }
+
+    synchronized void add(InboundMessage message, long now) {
+        int position = (int) (written++ % messages.length);
+        messages[position] = message;
+        receivedAt[position] = now;
+    }
+
+    synchronized StoredMessage latest() {
+        if (written == 0) {
+            return null;
+        }
+        int position = (int) ((written - 1) % messages.length);
+        return new StoredMessage(receivedAt[position], messages[position]);
+    }
+
+    /**
+     * @return up to {@code limit} messages, oldest first.
+     */
+    synchronized List<StoredMessage> recent(int limit) {
+        int count = (int) Math.min(Math.min(limit, messages.length), written);
+        List<StoredMessage> recent = new ArrayList<>(count);
+        for (long i = written - count; i < written; i++) {
+            int position = (int) (i % messages.length);
+            recent.add(new StoredMessage(receivedAt[position], messages[position]));
+        }
+        return recent;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary framing of messages, all lengths big-endian.
+ * <ul>
+ *     <li>A delivered message: 2-byte topic length, UTF-8 topic, 4-byte payload length, payload.</li>
+ *     <li>A publish sent by a WebSocket client: 4-byte request id, 1-byte QoS, 2-byte topic length,
+ *     UTF-8 topic, then the payload up to the end of the frame.</li>
+ * </ul>
+ */
+public final class MessageFrames {
+
+    private static final int PUBLISH_HEADER_LENGTH = 4 + 1 + 2;
+
+    private MessageFrames() {
+    }
+
+    public static byte[] encode(InboundMessage message) {
+        byte[] topic = message.topic().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.payload();
+        return ByteBuffer.allocate(2 + topic.length + 4 + payload.length)
+                .putShort((short) topic.length)
+                .put(topic)
+                .putInt(payload.length)
+                .put(payload)
+                .array();
+    }
+
+    public static byte[] encodePublish(PublishFrame publish) {
+        byte[] topic = publish.topic().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(PUBLISH_HEADER_LENGTH + topic.length + publish.payload().length)
+                .putInt((int) publish.id())
+                .put((byte) publish.qos())
+                .putShort((short) topic.length)
+                .put(topic)
+                .put(publish.payload())
+                .array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is truncated, the topic is empty or the QoS is not 0, 1 or 2.
+     */
+    public static PublishFrame decodePublish(byte[] frame) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            long id = Integer.toUnsignedLong(buffer.getInt());
+            int qos = buffer.get();
+            int topicLength = Short.toUnsignedInt(buffer.getShort());
+            if (qos < 0 || qos > 2) {
+                throw new IllegalArgumentException("Invalid QoS: " + qos);
+            }
+            if (topicLength == 0) {
+                throw new IllegalArgumentException("Topic is required");
+            }
+            byte[] topic = new byte[topicLength];
+            buffer.get(topic);
+            byte[] payload = Arrays.copyOfRange(frame, buffer.position(), frame.length);
+            return new PublishFrame(id, qos, new String(topic, StandardCharsets.UTF_8), payload);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated publish frame of " + frame.length + " bytes");
+        }
+    }
+
+    public record PublishFrame(long id, int qos, String topic, byte[] payload) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+
+import java.util.Base64;
+
+/**
+ * How a payload is rendered into the data of an SSE event.
+ */
+public enum PayloadEncoding {
+
+    /** Payload decoded as UTF-8 text. */
+    UTF8,
+
+    /** Payload base64-encoded, safe for binary payloads. */
+    BASE64;
+
+    public String encode(InboundMessage message) {
+        return this == BASE64
+                ? Base64.getEncoder().encodeToString(message.payload())
+                : message.payloadAsString();
+    }
+}
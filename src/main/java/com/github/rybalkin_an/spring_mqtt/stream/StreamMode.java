@@ -0,0 +1,19 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+/**
+ * How messages are shaped before being written to an SSE stream.
+ */
+public enum StreamMode {
+
+    /** Every message, as fast as the client reads them. */
+    PASSTHROUGH,
+
+    /** Latest value per topic: a slow client skips intermediate readings instead of queueing them. */
+    LATEST,
+
+    /** At most one message per topic per time window, the last one seen in the window. */
+    SAMPLE,
+
+    /** Messages grouped into a JSON array per event, emitted when the batch is full or the window elapses. */
+    BATCH
+}
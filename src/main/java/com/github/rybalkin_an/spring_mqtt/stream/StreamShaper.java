@@ -0,0 +1,104 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Applies a {@link StreamMode} to a stream of inbound messages and renders the SSE event payloads.
+ */
+public final class StreamShaper {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Per-topic groups of LATEST and SAMPLE are dropped after this long without messages, so that a
+    // wildcard stream does not keep one for every topic it has ever seen
+    static final Duration IDLE_GROUP_TIMEOUT = Duration.ofSeconds(30);
+
+    private StreamShaper() {
+    }
+
+    public static Flux<String> shape(Flux<InboundMessage> messages, StreamMode mode, Duration window, int batchSize,
+                                     PayloadEncoding encoding) {
+        return shape(messages, mode, window, batchSize, encoding, message -> {
+        });
+    }
+
+    /**
+     * @param emitted called with every message that survives shaping, as it is rendered
+     */
+    public static Flux<String> shape(Flux<InboundMessage> messages, StreamMode mode, Duration window, int batchSize,
+                                     PayloadEncoding encoding, Consumer<InboundMessage> emitted) {
+        return switch (mode) {
+            case PASSTHROUGH -> messages.doOnNext(emitted).map(encoding::encode);
+            case LATEST -> messages
+                    .groupBy(InboundMessage::topic)
+                    .flatMap(topic -> untilIdle(topic, IDLE_GROUP_TIMEOUT).onBackpressureLatest(), Integer.MAX_VALUE, 1)
+                    .doOnNext(emitted)
+                    .map(encoding::encode);
+            case SAMPLE -> messages
+                    .groupBy(InboundMessage::topic)
+                    .flatMap(topic -> untilIdle(topic, IDLE_GROUP_TIMEOUT).sample(window), Integer.MAX_VALUE)
+                    .doOnNext(emitted)
+                    .map(encoding::encode);
+            case BATCH -> messages
+                    // Fair backpressure: a full batch waits for a slow client instead of failing the stream
+                    .bufferTimeout(batchSize, window, true)
+                    .doOnNext(batch -> batch.forEach(emitted))
+                    .map(batch -> toJsonArray(batch, encoding));
+        };
+    }
+
+    /**
+     * Completes the messages once none has arrived for between one and two {@code idle} periods.
+     * Completing a group evicts it from {@code groupBy}, which opens a new one if the topic comes back.
+     * Checked by a periodic tick rather than a timer per message.
+     */
+    static <T> Flux<T> untilIdle(Flux<T> messages, Duration idle) {
+        AtomicBoolean active = new AtomicBoolean(true);
+        return messages.doOnNext(message -> active.lazySet(true))
+                .takeUntilOther(Flux.interval(idle).filter(tick -> !active.getAndSet(false)));
+    }
+
+    /**
+     * Joins payloads into a JSON array. UTF-8 payloads that are complete JSON objects or arrays are
+     * embedded as-is, anything else is embedded as a JSON string.
+     */
+    static String toJsonArray(List<InboundMessage> batch, PayloadEncoding encoding) {
+        StringBuilder json = new StringBuilder(batch.size() * 64).append('[');
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String payload = encoding.encode(batch.get(i));
+            String trimmed = payload.strip();
+            if (encoding == PayloadEncoding.UTF8 && (trimmed.startsWith("{") || trimmed.startsWith("[")) && isJson(trimmed)) {
+                json.append(trimmed);
+            } else {
+                json.append('"').append(JsonStringEncoder.getInstance().quoteAsString(payload)).append('"');
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * @return true if the text is exactly one well-formed JSON value, so that it cannot break the array.
+     */
+    private static boolean isJson(String text) {
+        try (JsonParser parser = JSON.createParser(text)) {
+            parser.nextToken();
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
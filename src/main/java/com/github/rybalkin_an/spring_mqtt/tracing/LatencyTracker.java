@@ -0,0 +1,104 @@
+package com.github.rybalkin_an.spring_mqtt.tracing;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.StageLatency;
+import com.github.rybalkin_an.spring_mqtt.model.TraceReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how old traced messages are at each {@link TraceStage}, measured from the origin timestamp
+ * carried in their {@link com.github.rybalkin_an.spring_mqtt.codec.Envelope}, as the
+ * {@code mqtt.trace.latency} timer with p50/p99/p999. Untraced messages are ignored, so tracing costs
+ * nothing unless publishers opt in. Ages below zero, from clock skew between hosts, are not recorded.
+ */
+@Component
+public class LatencyTracker {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${tracing.slowest.size}")
+    private int slowestSize;
+
+    @Value("${tracing.slowest.window}")
+    private Duration slowestWindow;
+
+    private final Timer[] timers = new Timer[TraceStage.values().length];
+
+    private SlowestMessages slowest;
+
+    @PostConstruct
+    void register() {
+        for (TraceStage stage : TraceStage.values()) {
+            timers[stage.ordinal()] = Timer.builder("mqtt.trace.latency")
+                    .description("Age of traced messages at each stage, since their origin timestamp")
+                    .tag("stage", stage.tag())
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        slowest = new SlowestMessages(slowestSize, slowestWindow.toMillis(), TraceClock.epochMicros() / 1000);
+    }
+
+    public void recordPublished(long originMicros) {
+        record(TraceStage.PUBLISH, TraceClock.epochMicros() - originMicros);
+    }
+
+    public void recordReceived(long originMicros, long receivedMicros) {
+        record(TraceStage.BROKER, receivedMicros - originMicros);
+    }
+
+    public void recordDequeued(InboundMessage message) {
+        if (message.isTraced()) {
+            record(TraceStage.FANOUT, TraceClock.epochMicros() - message.originMicros());
+        }
+    }
+
+    public void recordEgress(InboundMessage message) {
+        if (!message.isTraced()) {
+            return;
+        }
+        long now = TraceClock.epochMicros();
+        record(TraceStage.EGRESS, now - message.originMicros());
+        slowest.offer(message.topic(), message.originMicros(), message.receivedMicros(), now,
+                message.payload().length, now / 1000);
+    }
+
+    public TraceReport getReport() {
+        List<StageLatency> stages = new ArrayList<>(timers.length);
+        for (TraceStage stage : TraceStage.values()) {
+            HistogramSnapshot snapshot = timers[stage.ordinal()].takeSnapshot();
+            double[] values = new double[PERCENTILES.length];
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    if (percentile.percentile() == PERCENTILES[i]) {
+                        values[i] = percentile.value(TimeUnit.MICROSECONDS);
+                    }
+                }
+            }
+            stages.add(new StageLatency(stage.tag(), snapshot.count(), values[0], values[1], values[2],
+                    snapshot.max(TimeUnit.MICROSECONDS)));
+        }
+        return new TraceReport(stages, slowest.snapshot(TraceClock.epochMicros() / 1000));
+    }
+
+    private void record(TraceStage stage, long micros) {
+        if (micros >= 0) {
+            timers[stage.ordinal()].record(micros, TimeUnit.MICROSECONDS);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.rybalkin_an.spring_mqtt.tracing;
+
+import com.github.rybalkin_an.spring_mqtt.model.SlowMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The slowest messages of the current and the previous window, each kept in a min-heap of at most
+ * {@code size} entries. An offer that is not slower than the fastest entry of a full heap returns
+ * without taking the lock, so the common case costs two volatile reads.
+ */
+class SlowestMessages {
+
+    private static final Comparator<SlowMessage> BY_EGRESS = Comparator.comparingLong(SlowMessage::egressMicros);
+
+    private final int size;
+    private final long windowMillis;
+
+    private PriorityQueue<SlowMessage> current = new PriorityQueue<>(BY_EGRESS);
+    private PriorityQueue<SlowMessage> previous = new PriorityQueue<>(BY_EGRESS);
+
+    private volatile long windowEnd;
+    private volatile long threshold = -1;
+
+    SlowestMessages(int size, long windowMillis, long nowMillis) {
+        this.size = size;
+        this.windowMillis = windowMillis;
+        this.windowEnd = nowMillis + windowMillis;
+    }
+
+    void offer(String topic, long originMicros, long receivedMicros, long egressMicros, int bytes, long nowMillis) {
+        long latency = egressMicros - originMicros;
+        if (size <= 0 || (latency <= threshold && nowMillis < windowEnd)) {
+            return;
+        }
+        synchronized (this) {
+            rotate(nowMillis);
+            if (latency <= threshold) {
+                return;
+            }
+            current.add(new SlowMessage(topic, originMicros, receivedMicros - originMicros, latency, bytes));
+            if (current.size() > size) {
+                current.poll();
+            }
+            if (current.size() == size) {
+                threshold = current.peek().egressMicros();
+            }
+        }
+    }
+
+    /**
+     * @return up to {@code size} of the slowest messages of the last one to two windows, slowest first.
+     */
+    synchronized List<SlowMessage> snapshot(long nowMillis) {
+        rotate(nowMillis);
+        List<SlowMessage> slowest = new ArrayList<>(current.size() + previous.size());
+        slowest.addAll(current);
+        slowest.addAll(previous);
+        slowest.sort(BY_EGRESS.reversed());
+        return slowest.size() > size ? new ArrayList<>(slowest.subList(0, size)) : slowest;
+    }
+
+    private void rotate(long nowMillis) {
+        if (nowMillis < windowEnd) {
+            return;
+        }
+        if (nowMillis < windowEnd + windowMillis) {
+            PriorityQueue<SlowMessage> recycled = previous;
+            previous = current;
+            current = recycled;
+        } else {
+            previous.clear();
+        }
+        current.clear();
+        windowEnd = nowMillis + windowMillis;
+        threshold = -1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.rybalkin_an.spring_mqtt.tracing;
+
+/**
+ * Epoch time in microseconds, anchored to the wall clock once and advanced by {@link System#nanoTime()}.
+ * Stamps taken in this process are monotonic and free of allocation; across hosts they are only as
+ * close as the hosts' clocks.
+ */
+public final class TraceClock {
+
+    private static final long BASE_MICROS = System.currentTimeMillis() * 1000;
+
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private TraceClock() {
+    }
+
+    public static long epochMicros() {
+        return BASE_MICROS + (System.nanoTime() - BASE_NANOS) / 1000;
+    }
+}
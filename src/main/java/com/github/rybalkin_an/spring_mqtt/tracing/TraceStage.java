@@ -0,0 +1,19 @@
+package com.github.rybalkin_an.spring_mqtt.tracing;
+
+/**
+ * Points on the path of a traced message at which its age is recorded.
+ */
+public enum TraceStage {
+    /** The broker acknowledged the publish. */
+    PUBLISH,
+    /** The message came back from the broker to a subscriber connection. */
+    BROKER,
+    /** A stream took the message off its fan-out buffer. */
+    FANOUT,
+    /** The message was handed to the stream's response, after shaping. */
+    EGRESS;
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+/**
+ * A publish read back from the {@link SegmentLog}. {@code segment} and {@code position} locate the
+ * record in the log, see {@link SegmentLog#rewindTo(LogRecord)}.
+ */
+public record LogRecord(long segment, int position, long timestamp, int qos, String topic, byte[] payload) {
+}
@@ -0,0 +1,280 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.model.OutboxStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Store-and-forward buffer for publishes the broker cannot take right now. Messages are appended to
+ * a {@link SegmentLog} on local disk and drained in order once every publisher connection is up
+ * again: after a random delay of up to {@code wal.reconnect-jitter}, so that many nodes coming back
+ * at once do not replay in lockstep, and at no more than {@code wal.drain-rate} messages per second.
+ * <p>
+ * Delivery is at least once: a batch that is only partly acknowledged is retried from the first
+ * unacknowledged message.
+ */
+@Component
+public class Outbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(Outbox.class);
+
+    private static final long ACK_TIMEOUT_SECONDS = 30;
+
+    @Autowired
+    private MqttConnectionPool connectionPool;
+
+    @Value("${wal.enabled}")
+    private boolean enabled;
+
+    @Value("${wal.dir}")
+    private String directory;
+
+    @Value("${wal.segment-bytes}")
+    private int segmentBytes;
+
+    @Value("${wal.max-bytes}")
+    private long maxBytes;
+
+    @Value("${wal.retention}")
+    private String retention;
+
+    @Value("${wal.drain-rate}")
+    private double drainRate;
+
+    @Value("${wal.drain-batch}")
+    private int drainBatch;
+
+    @Value("${wal.drain-interval-ms}")
+    private long drainIntervalMs;
+
+    @Value("${wal.reconnect-jitter}")
+    private String reconnectJitter;
+
+    private SegmentLog log;
+
+    private ScheduledExecutorService drainer;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean draining;
+    private final AtomicLong bufferedCount = new AtomicLong();
+    private final AtomicLong drainedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    // Drainer thread only
+    private long retentionMillis;
+    private long jitterMillis;
+    private boolean wasConnected = true;
+    private long resumeAt;
+    private long lastTick;
+    private double tokens;
+
+    public Outbox() {
+    }
+
+    /**
+     * An enabled outbox that is only drained by calling {@link #drain(long)}.
+     */
+    Outbox(MqttConnectionPool connectionPool, String directory, int segmentBytes, double drainRate, int drainBatch)
+            throws IOException {
+        this.connectionPool = connectionPool;
+        this.enabled = true;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = Long.MAX_VALUE;
+        this.retention = "1h";
+        this.drainRate = drainRate;
+        this.drainBatch = drainBatch;
+        this.reconnectJitter = "0";
+        openLog();
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        openLog();
+        drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        drainer.scheduleWithFixedDelay(() -> drain(System.currentTimeMillis()), drainIntervalMs, drainIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void openLog() throws IOException {
+        retentionMillis = DurationStyle.detectAndParse(retention).toMillis();
+        jitterMillis = DurationStyle.detectAndParse(reconnectJitter).toMillis();
+        log = new SegmentLog(Path.of(directory), segmentBytes, maxBytes);
+        lastTick = System.currentTimeMillis();
+    }
+
+    @PreDestroy
+    void close() {
+        if (drainer != null) {
+            drainer.shutdownNow();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return {@code true} while buffered messages are waiting to be sent or a drained batch awaits its
+     * acknowledgements. New messages must then be buffered as well, or they would overtake the older ones.
+     */
+    public boolean hasBacklog() {
+        return enabled && (draining || log.hasUnread());
+    }
+
+    /**
+     * Appends the message to the log; it is flushed to disk within one drain interval.
+     * @throws IllegalArgumentException if the message is larger than a log segment, or its QoS or topic
+     * could never be published, see {@link MqttConnection#validatePublish(String, int)}.
+     */
+    public void append(byte[] payload, String topic, int qos) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Write-ahead buffer is disabled");
+        }
+        try {
+            MqttConnection.validatePublish(topic, qos);
+            log.append(System.currentTimeMillis(), qos, topic, payload);
+        } catch (IOException | IllegalArgumentException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+        dirty.set(true);
+        bufferedCount.incrementAndGet();
+    }
+
+    public long getBufferedCount() {
+        return bufferedCount.get();
+    }
+
+    public long getDrainedCount() {
+        return drainedCount.get();
+    }
+
+    public long getSizeBytes() {
+        return enabled ? log.sizeBytes() : 0;
+    }
+
+    /**
+     * Includes a count of the pending messages, which reads through the log; prefer the other getters
+     * for frequent polling.
+     */
+    public OutboxStats getStats() {
+        if (!enabled) {
+            return new OutboxStats(false, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new OutboxStats(true, log.countUnread(), log.sizeBytes(), bufferedCount.get(), drainedCount.get(),
+                log.getExpiredCount(), log.getDroppedCount(), rejectedCount.get());
+    }
+
+    void drain(long now) {
+        try {
+            if (dirty.getAndSet(false)) {
+                log.force();
+            }
+            if (!connectionPool.getPublishers().stream().allMatch(MqttConnection::isConnected)) {
+                wasConnected = false;
+                return;
+            }
+            if (!wasConnected) {
+                wasConnected = true;
+                resumeAt = now + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+                tokens = 0;
+                lastTick = now;
+            }
+            if (now < resumeAt || !log.hasUnread()) {
+                lastTick = now;
+                return;
+            }
+            tokens = Math.min(drainBatch, tokens + (now - lastTick) * drainRate / 1000);
+            lastTick = now;
+            if (tokens < 1) {
+                return;
+            }
+            // Set before the read moves the cursor and cleared once a failed batch has been rewound, so
+            // that hasBacklog() holds throughout
+            draining = true;
+            try {
+                List<LogRecord> batch = log.read((int) tokens, now - retentionMillis);
+                tokens -= batch.size();
+                try {
+                    int delivered = send(batch);
+                    if (delivered < batch.size()) {
+                        log.rewindTo(batch.get(delivered));
+                    }
+                    drainedCount.addAndGet(delivered);
+                } catch (Exception e) {
+                    // Committing the cursor past the batch would lose it, so the whole batch is retried
+                    if (!batch.isEmpty()) {
+                        log.rewindTo(batch.get(0));
+                    }
+                    throw e;
+                }
+                log.commit();
+            } finally {
+                draining = false;
+            }
+        } catch (Exception e) {
+            logger.error("Write-ahead log drain failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pipelines the batch and waits for the acknowledgements.
+     * @return the number of leading records that no longer need sending.
+     */
+    private int send(List<LogRecord> batch) throws InterruptedException {
+        List<CompletableFuture<Void>> acks = batch.stream()
+                .map(record -> connectionPool.forPublish(record.topic()).publish(record.topic(), record.payload(), record.qos()))
+                .toList();
+        int delivered = 0;
+        for (CompletableFuture<Void> ack : acks) {
+            try {
+                ack.get(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                if (MqttConnection.isConnectionFailure(e.getCause())) {
+                    logger.warn("Connection lost while draining write-ahead log, {} messages will be retried",
+                            batch.size() - delivered);
+                    return delivered;
+                }
+                // Resending would fail the same way; leave it behind rather than block the log
+                logger.error("Dropping buffered message to {}: {}", batch.get(delivered).topic(), e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                logger.warn("No acknowledgement within {}s while draining write-ahead log", ACK_TIMEOUT_SECONDS);
+                return delivered;
+            }
+            delivered++;
+        }
+        return delivered;
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped file of the {@link SegmentLog}. Records are laid out back to back as
+ * <pre>
+ * [int bodyLength][int crc32c(body)][body: long timestamp, byte qos, short topicLength, topic, payload]
+ * </pre>
+ * The length is written last, so a zero length marks the end of the written data, and a record cut
+ * short by a crash fails its checksum on recovery.
+ */
+class Segment {
+
+    static final int HEADER_BYTES = 8;
+    private static final int BODY_PREFIX_BYTES = 8 + 1 + 2;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int recordCount;
+
+    private Segment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static Path pathFor(Path directory, long id) {
+        return directory.resolve(String.format("%020d.log", id));
+    }
+
+    /**
+     * Maps the segment file, creating it if needed, and recovers the write position by scanning the
+     * valid records from the start.
+     */
+    static Segment open(Path directory, long id, int size) throws IOException {
+        Path path = pathFor(directory, id);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segment.recover();
+            return segment;
+        }
+    }
+
+    static int recordBytes(byte[] topic, byte[] payload) {
+        return HEADER_BYTES + BODY_PREFIX_BYTES + topic.length + payload.length;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    boolean hasRoomFor(int recordBytes) {
+        return writePosition + recordBytes <= buffer.capacity();
+    }
+
+    void append(long timestamp, int qos, byte[] topic, byte[] payload) {
+        int bodyStart = writePosition + HEADER_BYTES;
+        int bodyLength = BODY_PREFIX_BYTES + topic.length + payload.length;
+        buffer.putLong(bodyStart, timestamp);
+        buffer.put(bodyStart + 8, (byte) qos);
+        buffer.putShort(bodyStart + 9, (short) topic.length);
+        buffer.put(bodyStart + BODY_PREFIX_BYTES, topic);
+        buffer.put(bodyStart + BODY_PREFIX_BYTES + topic.length, payload);
+        buffer.putInt(writePosition + 4, checksum(bodyStart, bodyLength));
+        buffer.putInt(writePosition, bodyLength);
+        writePosition = bodyStart + bodyLength;
+        recordCount++;
+    }
+
+    /**
+     * @return the record starting at {@code position}, which must be below the write position.
+     */
+    LogRecord read(int position) {
+        int bodyStart = position + HEADER_BYTES;
+        int bodyLength = buffer.getInt(position);
+        int topicLength = buffer.getShort(bodyStart + 9) & 0xFFFF;
+        byte[] topic = new byte[topicLength];
+        byte[] payload = new byte[bodyLength - BODY_PREFIX_BYTES - topicLength];
+        buffer.get(bodyStart + BODY_PREFIX_BYTES, topic);
+        buffer.get(bodyStart + BODY_PREFIX_BYTES + topicLength, payload);
+        return new LogRecord(id, position, buffer.getLong(bodyStart), buffer.get(bodyStart + 8),
+                new String(topic, StandardCharsets.UTF_8), payload);
+    }
+
+    /**
+     * @return the position of the record following the one at {@code position}.
+     */
+    int next(int position) {
+        return position + HEADER_BYTES + buffer.getInt(position);
+    }
+
+    /**
+     * @return number of records from {@code position} to the write position.
+     */
+    int countFrom(int position) {
+        int count = 0;
+        for (int current = position; current < writePosition; current = next(current)) {
+            count++;
+        }
+        return count;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int bodyLength = buffer.getInt(position);
+            int bodyStart = position + HEADER_BYTES;
+            if (bodyLength < BODY_PREFIX_BYTES || bodyStart + bodyLength > buffer.capacity()
+                    || buffer.getInt(position + 4) != checksum(bodyStart, bodyLength)) {
+                break;
+            }
+            position = bodyStart + bodyLength;
+            recordCount++;
+        }
+        writePosition = position;
+        // Clear a torn record so that it cannot be mistaken for data once appends resume
+        if (position + HEADER_BYTES <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private int checksum(int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,256 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of outbound publishes in a directory of memory-mapped segment files. Records are
+ * read back in append order from a read cursor; {@link #commit()} persists the cursor and deletes
+ * segments that have been fully read, {@link #rewindTo(LogRecord)} moves it back for a retry.
+ * <p>
+ * The total size is capped: when a new segment would exceed {@code maxBytes}, the oldest segment is
+ * dropped, unread records included. Thread-safe, and the directory is locked against other logs,
+ * in this process or another, for as long as the log is open.
+ */
+public class SegmentLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("\\d{20}\\.log");
+    private static final String CURSOR_FILE = "cursor";
+    private static final String LOCK_FILE = "lock";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel lockChannel;
+    private final MappedByteBuffer cursor;
+    private Segment head;
+
+    private long readSegment;
+    private int readPosition;
+    private long droppedCount;
+    private long expiredCount;
+
+    /**
+     * Opens the log in the directory, recovering segments and the committed cursor left by a previous run.
+     * @throws IOException also if another open log already uses the directory.
+     */
+    public SegmentLog(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = Math.max(maxBytes, 2L * segmentBytes);
+        Files.createDirectories(directory);
+        this.lockChannel = lock(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> SEGMENT_FILE.matcher(path.getFileName().toString()).matches()).toList()) {
+                long id = Long.parseLong(file.getFileName().toString().substring(0, 20));
+                segments.put(id, Segment.open(directory, id, segmentBytes));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.open(directory, 0, segmentBytes));
+        }
+        head = segments.lastEntry().getValue();
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+        }
+        readSegment = cursor.getLong(0);
+        readPosition = cursor.getInt(8);
+        Segment segment = segments.get(readSegment);
+        if (segment == null || readPosition > segment.getWritePosition()) {
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+        logger.info("Opened write-ahead log in {}: {} segments, {} unread records", directory, segments.size(), countUnread());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the record is larger than a segment.
+     */
+    public synchronized void append(long timestamp, int qos, String topic, byte[] payload) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int recordBytes = Segment.recordBytes(topicBytes, payload);
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes exceeds the log segment size");
+        }
+        if (!head.hasRoomFor(recordBytes)) {
+            roll();
+        }
+        head.append(timestamp, qos, topicBytes, payload);
+    }
+
+    /**
+     * Reads up to {@code max} records from the read cursor, skipping those older than {@code notBefore}.
+     */
+    public synchronized List<LogRecord> read(int max, long notBefore) {
+        List<LogRecord> records = new ArrayList<>(Math.min(max, 1024));
+        while (records.size() < max) {
+            Segment segment = segments.get(readSegment);
+            if (readPosition >= segment.getWritePosition()) {
+                Long next = segments.higherKey(readSegment);
+                if (next == null) {
+                    break;
+                }
+                readSegment = next;
+                readPosition = 0;
+                continue;
+            }
+            LogRecord record = segment.read(readPosition);
+            readPosition = segment.next(readPosition);
+            if (record.timestamp() < notBefore) {
+                expiredCount++;
+                continue;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Moves the read cursor back to the record, so that it is the next one read.
+     */
+    public synchronized void rewindTo(LogRecord record) {
+        if (segments.containsKey(record.segment())) {
+            readSegment = record.segment();
+            readPosition = record.position();
+        } else if (record.segment() < segments.firstKey()) {
+            // Dropped by the size cap meanwhile
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+    }
+
+    /**
+     * Persists the read cursor and deletes the segments before it.
+     */
+    public synchronized void commit() throws IOException {
+        cursor.putLong(0, readSegment);
+        cursor.putInt(8, readPosition);
+        Map.Entry<Long, Segment> oldest;
+        while ((oldest = segments.firstEntry()) != null && oldest.getKey() < readSegment) {
+            segments.remove(oldest.getKey());
+            oldest.getValue().delete();
+        }
+    }
+
+    /**
+     * @return {@code true} if there are records beyond the read cursor.
+     */
+    public synchronized boolean hasUnread() {
+        return readSegment != head.getId() || readPosition < head.getWritePosition();
+    }
+
+    public synchronized long countUnread() {
+        long count = 0;
+        for (Segment segment : segments.tailMap(readSegment, true).values()) {
+            count += segment.countFrom(segment.getId() == readSegment ? readPosition : 0);
+        }
+        return count;
+    }
+
+    public synchronized long sizeBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    /**
+     * @return number of unread records discarded because the size cap was reached.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return number of records skipped by {@link #read(int, long)} for being too old.
+     */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Flushes written records and the cursor to disk.
+     */
+    public synchronized void force() {
+        head.force();
+        cursor.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+        try {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to release the lock of write-ahead log {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Two logs writing the same segments and cursor would overwrite each other's records, so the
+     * second one fails instead.
+     */
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another log of this process
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Write-ahead log directory " + directory + " is already in use");
+        }
+        return channel;
+    }
+
+    private void roll() throws IOException {
+        head.force();
+        while (sizeBytes() + segmentBytes > maxBytes) {
+            dropOldest();
+        }
+        long id = head.getId() + 1;
+        head = Segment.open(directory, id, segmentBytes);
+        segments.put(id, head);
+    }
+
+    private void dropOldest() throws IOException {
+        Segment oldest = segments.pollFirstEntry().getValue();
+        long dropped;
+        if (oldest.getId() < readSegment) {
+            dropped = 0;
+        } else if (oldest.getId() == readSegment) {
+            dropped = oldest.countFrom(readPosition);
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        } else {
+            dropped = oldest.getRecordCount();
+        }
+        droppedCount += dropped;
+        oldest.delete();
+        logger.warn("Write-ahead log reached {} bytes, dropped segment {} with {} unsent messages", maxBytes, oldest.getId(), dropped);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.rybalkin_an.spring_mqtt.websocket;
+
+/**
+ * How messages are delivered to a WebSocket client. Commands and acknowledgements are JSON text frames either way.
+ */
+public enum FrameFormat {
+
+    /** A {@code message} JSON text frame per message, payload rendered with the requested encoding. */
+    JSON,
+
+    /** A binary frame per message, see {@link com.github.rybalkin_an.spring_mqtt.stream.MessageFrames}. */
+    BINARY
+}
@@ -0,0 +1,396 @@
+package com.github.rybalkin_an.spring_mqtt.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.rybalkin_an.spring_mqtt.codec.SensorCodecs;
+import com.github.rybalkin_an.spring_mqtt.config.FanOutConfig;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.metrics.MqttMetrics;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.SocketCommand;
+import com.github.rybalkin_an.spring_mqtt.model.SocketEvent;
+import com.github.rybalkin_an.spring_mqtt.service.MqttPublisher;
+import com.github.rybalkin_an.spring_mqtt.service.MqttSubscriber;
+import com.github.rybalkin_an.spring_mqtt.stream.MessageFrames;
+import com.github.rybalkin_an.spring_mqtt.stream.PayloadEncoding;
+import com.github.rybalkin_an.spring_mqtt.tracing.LatencyTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Multiplexes any number of topic subscriptions and publishes over one WebSocket connection.
+ * <p>
+ * Commands are JSON text frames, see {@link SocketCommand}; publishes may also be sent as binary
+ * frames, see {@link MessageFrames}. Every command is acknowledged with its {@code id}. Messages are
+ * only delivered on a topic filter while the client has credit for it: {@code credit} of the
+ * {@code subscribe} command (by default {@code fanout.demand-batch}), topped up with {@code credit}
+ * commands. Undelivered messages wait in the filter's fan-out buffer, subject to its overflow policy.
+ * Frames the socket has not yet written are capped at {@code websocket.outbound-buffer}; a client
+ * granting more credit than it reads is disconnected with 1008 (policy violation) once it exceeds that.
+ * <p>
+ * Query parameters: {@code format} (JSON or BINARY) of delivered messages and, for JSON, the
+ * payload {@code encoding} (UTF8 or BASE64).
+ */
+@Component
+public class MqttWebSocketHandler implements WebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttWebSocketHandler.class);
+
+    private static final int DEFAULT_QOS = 1;
+    // Publishes awaiting their acknowledgement before the connection stops reading frames
+    private static final int MAX_PENDING_PUBLISHES = 1024;
+
+    @Autowired
+    private MqttSubscriber mqttSubscriber;
+
+    @Autowired
+    private MqttPublisher mqttPublisher;
+
+    @Autowired
+    private FanOutConfig fanOutConfig;
+
+    @Autowired
+    private SensorCodecs sensorCodecs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MqttMetrics metrics;
+
+    @Autowired
+    private LatencyTracker latencyTracker;
+
+    @Autowired
+    private Scheduler mqttBlockingScheduler;
+
+    @Value("${websocket.outbound-buffer}")
+    private int outboundBuffer;
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri())
+                .build().getQueryParams();
+        Connection connection;
+        try {
+            connection = new Connection(session,
+                    FrameFormat.valueOf(param(params, "format", "JSON").toUpperCase()),
+                    PayloadEncoding.valueOf(param(params, "encoding", "UTF8").toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected WebSocket connection {}: {}", session.getId(), e.getMessage());
+            return session.close();
+        }
+        Mono<Void> input = session.receive()
+                .flatMap(connection::onFrame, MAX_PENDING_PUBLISHES)
+                .doFinally(signal -> connection.close())
+                .then();
+        Mono<Void> output = session.send(connection.outbound.asFlux());
+        return Mono.zip(input, output).then();
+    }
+
+    private static String param(MultiValueMap<String, String> params, String name, String defaultValue) {
+        String value = params.getFirst(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private void unsubscribeLater(String topic) {
+        try {
+            mqttBlockingScheduler.schedule(() -> mqttSubscriber.unsubscribe(topic));
+        } catch (RejectedExecutionException e) {
+            mqttSubscriber.unsubscribe(topic);
+        }
+    }
+
+    private final class Connection {
+
+        private final WebSocketSession session;
+        private final FrameFormat format;
+        private final PayloadEncoding encoding;
+        private final Sinks.Many<WebSocketMessage> outbound;
+        private final Map<String, TopicStream> streams = new ConcurrentHashMap<>();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+
+        Connection(WebSocketSession session, FrameFormat format, PayloadEncoding encoding) {
+            this.session = session;
+            this.format = format;
+            this.encoding = encoding;
+            this.outbound = Sinks.many().unicast().onBackpressureBuffer(Queues.<WebSocketMessage>get(outboundBuffer).get());
+        }
+
+        /**
+         * Handles one frame; the returned Mono completes once a publish has been acknowledged, right
+         * away for any other frame.
+         */
+        Mono<Void> onFrame(WebSocketMessage frame) {
+            try {
+                return switch (frame.getType()) {
+                    case TEXT -> command(objectMapper.readValue(frame.getPayloadAsText(), SocketCommand.class));
+                    case BINARY -> {
+                        byte[] bytes = new byte[frame.getPayload().readableByteCount()];
+                        frame.getPayload().read(bytes);
+                        MessageFrames.PublishFrame publish = MessageFrames.decodePublish(bytes);
+                        yield publish(publish.id(), publish.topic(), publish.qos(), publish.payload());
+                    }
+                    default -> Mono.empty();
+                };
+            } catch (IOException | IllegalArgumentException e) {
+                send(SocketEvent.error(null, null, "Malformed frame: " + e.getMessage()));
+                return Mono.empty();
+            }
+        }
+
+        private Mono<Void> command(SocketCommand command) {
+            String op = command.getOp() == null ? "" : command.getOp();
+            String topic = command.getTopic();
+            if (topic == null || topic.isEmpty()) {
+                send(SocketEvent.error(command.getId(), topic, "topic is required"));
+                return Mono.empty();
+            }
+            int qos = command.getQos() != null ? command.getQos() : DEFAULT_QOS;
+            if (qos < 0 || qos > 2) {
+                send(SocketEvent.error(command.getId(), topic, "QoS must be 0, 1 or 2: " + qos));
+                return Mono.empty();
+            }
+            switch (op) {
+                case "subscribe" -> subscribe(command.getId(), topic, qos,
+                        command.getCredit() != null ? command.getCredit() : fanOutConfig.getDemandBatch());
+                case "unsubscribe" -> unsubscribe(command.getId(), topic);
+                case "credit" -> credit(command.getId(), topic, command.getCredit() != null ? command.getCredit() : 0);
+                case "publish" -> {
+                    return publish(command.getId(), topic, qos,
+                            command.payloadAsString().getBytes(StandardCharsets.UTF_8));
+                }
+                default -> send(SocketEvent.error(command.getId(), topic, "Unknown op: " + op));
+            }
+            return Mono.empty();
+        }
+
+        private void subscribe(Long id, String topic, int qos, long credit) {
+            TopicStream stream = new TopicStream(topic, credit);
+            if (streams.putIfAbsent(topic, stream) != null) {
+                send(SocketEvent.error(id, topic, "Already subscribed"));
+                return;
+            }
+            Mono.fromCallable(() -> {
+                        mqttSubscriber.subscribe(topic, qos);
+                        return topic;
+                    })
+                    .subscribeOn(mqttBlockingScheduler)
+                    .subscribe(subscribed -> {
+                        stream.open();
+                        send(SocketEvent.ack(id, topic));
+                    }, error -> {
+                        streams.remove(topic, stream);
+                        logger.error("Failed to subscribe to topic {} with QoS {}: {}", topic, qos, error.getMessage());
+                        send(SocketEvent.error(id, topic, "Subscription failed: " + error.getMessage()));
+                    });
+        }
+
+        private void unsubscribe(Long id, String topic) {
+            TopicStream stream = streams.remove(topic);
+            if (stream == null) {
+                send(SocketEvent.error(id, topic, "Not subscribed"));
+                return;
+            }
+            stream.close();
+            send(SocketEvent.ack(id, topic));
+        }
+
+        private void credit(Long id, String topic, long credit) {
+            TopicStream stream = streams.get(topic);
+            if (stream == null) {
+                send(SocketEvent.error(id, topic, "Not subscribed"));
+            } else if (credit <= 0) {
+                send(SocketEvent.error(id, topic, "Credit must be positive"));
+            } else {
+                stream.grant(credit);
+            }
+        }
+
+        private Mono<Void> publish(Long id, String topic, int qos, byte[] payload) {
+            try {
+                MqttConnection.validatePublish(topic, qos);
+            } catch (IllegalArgumentException e) {
+                send(SocketEvent.error(id, topic, e.getMessage()));
+                return Mono.empty();
+            }
+            return mqttPublisher.publishReactive(payload, topic, qos, false)
+                    .map(outcome -> SocketEvent.published(id, topic, outcome))
+                    .onErrorResume(e -> Mono.just(SocketEvent.error(id, topic, "Error publishing message: " + e.getMessage())))
+                    .doOnNext(this::send)
+                    .then();
+        }
+
+        void close() {
+            for (TopicStream stream : streams.values()) {
+                stream.close();
+            }
+            streams.clear();
+            synchronized (outbound) {
+                outbound.tryEmitComplete();
+            }
+        }
+
+        private void send(SocketEvent event) {
+            try {
+                emit(session.textMessage(objectMapper.writeValueAsString(event)));
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to serialize WebSocket event: {}", e.getMessage());
+            }
+        }
+
+        private void emit(WebSocketMessage message) {
+            Sinks.EmitResult result;
+            // Emitted from fan-out, publish completion and request threads, which a sink requires to be serialized
+            synchronized (outbound) {
+                result = outbound.tryEmitNext(message);
+            }
+            if (result.isFailure()) {
+                DataBufferUtils.release(message.getPayload());
+                if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                    overflow();
+                }
+            }
+        }
+
+        private void overflow() {
+            if (!overflowed.compareAndSet(false, true)) {
+                return;
+            }
+            logger.warn("Closing WebSocket connection {}: {} frames not yet written to the client", session.getId(), outboundBuffer);
+            close();
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Outbound buffer overflow")).subscribe();
+        }
+
+        private void deliver(InboundMessage message) {
+            if (format == FrameFormat.BINARY) {
+                byte[] frame = MessageFrames.encode(message);
+                emit(session.binaryMessage(factory -> factory.wrap(frame)));
+            } else {
+                if (encoding == PayloadEncoding.UTF8) {
+                    message = message.withPayload(sensorCodecs.toJson(message.payload()));
+                }
+                send(SocketEvent.message(message.topic(), encoding.encode(message)));
+            }
+        }
+
+        /**
+         * One topic filter of the connection. Becomes a fan-out subscriber once the broker subscription
+         * is made, and requests messages as the client grants credit.
+         */
+        private final class TopicStream implements Flow.Subscriber<InboundMessage> {
+
+            private final String topic;
+            private long pendingCredit;
+            private Flow.Subscription subscription;
+            private boolean opened;
+            private boolean closed;
+
+            TopicStream(String topic, long credit) {
+                this.topic = topic;
+                this.pendingCredit = credit;
+            }
+
+            void open() {
+                synchronized (this) {
+                    if (closed) {
+                        unsubscribeLater(topic);
+                        return;
+                    }
+                    opened = true;
+                }
+                metrics.streamOpened();
+                mqttSubscriber.subscribeToMessages(topic, this);
+            }
+
+            void grant(long credit) {
+                Flow.Subscription current;
+                synchronized (this) {
+                    current = subscription;
+                    if (current == null) {
+                        pendingCredit = pendingCredit + credit < 0 ? Long.MAX_VALUE : pendingCredit + credit;
+                        return;
+                    }
+                }
+                current.request(credit);
+            }
+
+            void close() {
+                Flow.Subscription current;
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    current = subscription;
+                    if (!opened) {
+                        return;
+                    }
+                }
+                if (current != null) {
+                    current.cancel();
+                }
+                metrics.streamClosed();
+                unsubscribeLater(topic);
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                boolean cancelled;
+                long credit;
+                synchronized (this) {
+                    this.subscription = subscription;
+                    cancelled = closed;
+                    credit = pendingCredit;
+                }
+                if (cancelled) {
+                    subscription.cancel();
+                } else if (credit > 0) {
+                    subscription.request(credit);
+                }
+            }
+
+            @Override
+            public void onNext(InboundMessage message) {
+                latencyTracker.recordDequeued(message);
+                deliver(message);
+                latencyTracker.recordEgress(message);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                streams.remove(topic, this);
+                close();
+                send(SocketEvent.error(null, topic, error.getMessage()));
+            }
+
+            @Override
+            public void onComplete() {
+                streams.remove(topic, this);
+                close();
+            }
+        }
+    }
+}
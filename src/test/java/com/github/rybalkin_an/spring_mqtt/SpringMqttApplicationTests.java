@@ -2,8 +2,10 @@ package com.github.rybalkin_an.spring_mqtt;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
 @SpringBootTest
+@ActiveProfiles("embedded")
 class SpringMqttApplicationTests {
 
     @Test
@@ -0,0 +1,107 @@
+package com.github.rybalkin_an.spring_mqtt.aggregation;
+
+import com.github.rybalkin_an.spring_mqtt.model.AggregateSnapshot;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WindowedStatsTest {
+
+    private static final UUID SENSOR_UUID = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+
+    @Test
+    @DisplayName("Sketch quantiles stay within the relative accuracy")
+    void whenQueryingSketch_thenQuantilesAreWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        for (int value = 1; value <= 10_000; value++) {
+            sketch.add(value);
+        }
+
+        assertEquals(10_000, sketch.getCount());
+        assertEquals(5_000, sketch.quantile(0.5), 5_000 * 0.01);
+        assertEquals(9_900, sketch.quantile(0.99), 9_900 * 0.01);
+        assertEquals(1, sketch.quantile(0), 0.01);
+    }
+
+    @Test
+    @DisplayName("Negative values, zeros and merged sketches are ordered correctly")
+    void whenMergingSignedSketches_thenQuantilesSpanBothSigns() {
+        QuantileSketch negative = new QuantileSketch(0.01, 128);
+        QuantileSketch positive = new QuantileSketch(0.01, 128);
+        for (int i = 0; i < 100; i++) {
+            negative.add(-20);
+            positive.add(0);
+            positive.add(30);
+        }
+
+        negative.merge(positive);
+
+        assertEquals(300, negative.getCount());
+        assertEquals(-20, negative.quantile(0.1), 0.2);
+        assertEquals(0, negative.quantile(0.5));
+        assertEquals(30, negative.quantile(0.9), 0.3);
+    }
+
+    @Test
+    @DisplayName("Sketch memory is bounded by collapsing the smallest magnitudes")
+    void whenValuesSpanMoreThanMaxBins_thenHighQuantilesStayAccurate() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(Math.exp(random.nextDouble() * 20));
+        }
+        sketch.add(1e9);
+
+        assertEquals(1e9, sketch.quantile(1), 1e9 * 0.01);
+        assertTrue(sketch.quantile(0.999) > Math.exp(19));
+    }
+
+    @Test
+    @DisplayName("A tumbling window is reported once it closes and cleared when it goes stale")
+    void whenWindowCloses_thenTumblingSnapshotIsReported() {
+        WindowedStats stats = new WindowedStats(SENSOR_UUID, Duration.ofSeconds(1), 10, 0.01, 128);
+        stats.add(1_000, 10);
+        stats.add(1_500, 20);
+        stats.add(1_999, 30);
+
+        assertNull(stats.tumbling(1_999));
+
+        AggregateSnapshot snapshot = stats.tumbling(2_100);
+        assertEquals(SENSOR_UUID, snapshot.uuid());
+        assertEquals(1_000, snapshot.windowStart());
+        assertEquals(2_000, snapshot.windowEnd());
+        assertEquals(3, snapshot.count());
+        assertEquals(10, snapshot.min());
+        assertEquals(30, snapshot.max());
+        assertEquals(20, snapshot.mean());
+        assertEquals(20, snapshot.p50(), 0.2);
+
+        assertNull(stats.tumbling(3_100));
+    }
+
+    @Test
+    @DisplayName("A sliding window drops slots that have moved out of it")
+    void whenTimeAdvances_thenSlidingWindowForgetsOldSlots() {
+        WindowedStats stats = new WindowedStats(SENSOR_UUID, Duration.ofSeconds(1), 10, 0.01, 128);
+        stats.add(1_000, 100);
+        stats.add(1_450, 5);
+        stats.add(1_950, 7);
+
+        AggregateSnapshot all = stats.sliding(1_950);
+        assertEquals(3, all.count());
+        assertEquals(100, all.max());
+
+        AggregateSnapshot later = stats.sliding(2_050);
+        assertEquals(2, later.count());
+        assertEquals(7, later.max());
+        assertEquals(1_100, later.windowStart());
+        assertEquals(2_100, later.windowEnd());
+
+        assertNull(stats.sliding(3_000));
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnvelopeTest {
+
+    @Test
+    @DisplayName("Traced envelopes carry the origin timestamp and the unchanged body")
+    void whenParsingTracedEnvelope_thenOriginAndBodyAreRestored() {
+        byte[] body = "{\"value\":1.5}".getBytes(StandardCharsets.UTF_8);
+
+        Envelope envelope = Envelope.parse(Envelope.traced(body, 1_700_000_000_123_456L));
+
+        assertTrue(envelope.isTraced());
+        assertEquals(1_700_000_000_123_456L, envelope.originMicros());
+        assertArrayEquals(body, envelope.body());
+    }
+
+    @Test
+    @DisplayName("Compressed envelopes carry the flag, with or without an origin timestamp")
+    void whenParsingCompressedEnvelope_thenFlagsAndBodyAreRestored() {
+        byte[] body = {1, 2, 3};
+
+        Envelope compressed = Envelope.parse(Envelope.wrap(Envelope.COMPRESSED, 0, body));
+        Envelope tracedCompressed = Envelope.parse(Envelope.wrap(Envelope.TRACED | Envelope.COMPRESSED, 42, body));
+
+        assertTrue(compressed.isCompressed());
+        assertFalse(compressed.isTraced());
+        assertArrayEquals(body, compressed.body());
+        assertTrue(tracedCompressed.isCompressed());
+        assertTrue(tracedCompressed.isTraced());
+        assertEquals(42, tracedCompressed.originMicros());
+        assertArrayEquals(body, tracedCompressed.body());
+    }
+
+    @Test
+    @DisplayName("JSON and binary readings are not mistaken for envelopes")
+    void whenPayloadIsNotEnveloped_thenParseReturnsNull() {
+        assertNull(Envelope.parse("{\"value\":1.5}".getBytes(StandardCharsets.UTF_8)));
+        assertNull(Envelope.parse(new byte[]{(byte) 0xB1, 0, 0, 0}));
+        assertNull(Envelope.parse(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("Truncated envelopes and unknown flags are rejected")
+    void whenEnvelopeIsMalformed_thenParseFails() {
+        byte[] truncated = {0x00, (byte) 0xE7, Envelope.TRACED, 1, 2};
+        byte[] unknownFlags = {0x00, (byte) 0xE7, (byte) 0x80, 1};
+
+        assertThrows(IllegalArgumentException.class, () -> Envelope.parse(truncated));
+        assertThrows(IllegalArgumentException.class, () -> Envelope.parse(unknownFlags));
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadBatchTest {
+
+    @Test
+    @DisplayName("Payloads of any size come back in order, with one byte of framing for small ones")
+    void whenDecodingBatch_thenPayloadsAreRestoredInOrder() {
+        byte[] reading = "{\"value\":1.5}".getBytes(StandardCharsets.UTF_8);
+        byte[] empty = new byte[0];
+        byte[] large = new byte[20_000];
+        large[19_999] = 7;
+
+        byte[] body = PayloadBatch.encode(List.of(reading, empty, large));
+        List<byte[]> payloads = PayloadBatch.decode(body);
+
+        assertEquals(1 + reading.length + 1 + 3 + large.length, body.length);
+        assertEquals(3, payloads.size());
+        assertArrayEquals(reading, payloads.get(0));
+        assertArrayEquals(empty, payloads.get(1));
+        assertArrayEquals(large, payloads.get(2));
+    }
+
+    @Test
+    @DisplayName("Truncated payloads and lengths are rejected")
+    void whenBatchIsMalformed_thenDecodeFails() {
+        byte[] body = PayloadBatch.encode(List.of(new byte[10], new byte[200]));
+        byte[] truncatedPayload = Arrays.copyOf(body, body.length - 1);
+        byte[] truncatedLength = {(byte) 0x80};
+        byte[] overlongLength = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+
+        assertThrows(IllegalArgumentException.class, () -> PayloadBatch.decode(truncatedPayload));
+        assertThrows(IllegalArgumentException.class, () -> PayloadBatch.decode(truncatedLength));
+        assertThrows(IllegalArgumentException.class, () -> PayloadBatch.decode(overlongLength));
+    }
+}
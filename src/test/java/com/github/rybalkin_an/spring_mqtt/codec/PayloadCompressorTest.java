@@ -0,0 +1,53 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadCompressorTest {
+
+    private static final byte[] READING = ("{\"uuid\":\"3f2a9c1e-7b4d-4e8a-9f10-2c3d4e5f6a7b\","
+            + "\"timestamp\":\"2025-03-14 09:26:53\",\"value\":23.75}").getBytes(StandardCharsets.UTF_8);
+
+    private final PayloadCompressor compressor = new PayloadCompressor(6, 1024 * 1024);
+
+    @Test
+    @DisplayName("A single JSON reading shrinks thanks to the dictionary and inflates back unchanged")
+    void whenCompressingReading_thenItIsSmallerAndRoundTrips() {
+        byte[] compressed = compressor.compress(READING);
+
+        assertTrue(compressed.length < READING.length * 2 / 3,
+                "Compressed " + READING.length + " to " + compressed.length + " bytes");
+        assertArrayEquals(READING, compressor.decompress(compressed));
+    }
+
+    @Test
+    @DisplayName("Empty and large payloads round-trip")
+    void whenCompressingAnySize_thenPayloadRoundTrips() {
+        byte[] large = new byte[200_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31 + (i >>> 7));
+        }
+
+        assertArrayEquals(new byte[0], compressor.decompress(compressor.compress(new byte[0])));
+        assertArrayEquals(large, compressor.decompress(compressor.compress(large)));
+    }
+
+    @Test
+    @DisplayName("Truncated, corrupt and oversized bodies are rejected")
+    void whenBodyIsMalformedOrTooLarge_thenDecompressFails() {
+        byte[] compressed = compressor.compress(READING);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        byte[] corrupt = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+        byte[] bomb = compressor.compress(new byte[100_000]);
+        PayloadCompressor small = new PayloadCompressor(6, 10_000);
+
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(truncated));
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(corrupt));
+        assertThrows(IllegalArgumentException.class, () -> small.decompress(bomb));
+    }
+}
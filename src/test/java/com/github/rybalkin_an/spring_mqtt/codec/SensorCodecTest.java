@@ -0,0 +1,73 @@
+package com.github.rybalkin_an.spring_mqtt.codec;
+
+import com.github.rybalkin_an.spring_mqtt.model.SensorReading;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCodecTest {
+
+    private static final UUID SENSOR_UUID = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+
+    private static SensorReading reading(double value) {
+        SensorReading reading = new SensorReading();
+        reading.setUuid(SENSOR_UUID);
+        reading.setEpochMillis(1_700_000_000_000L);
+        reading.setValue(value);
+        return reading;
+    }
+
+    @Test
+    @DisplayName("JSON encoding keeps the original Sensor wire format")
+    void whenEncodingJson_thenOriginalFormatIsProduced() {
+        JsonSensorCodec codec = new JsonSensorCodec(ZoneOffset.UTC);
+
+        String json = new String(codec.encode(reading(-12.25)), StandardCharsets.UTF_8);
+
+        assertEquals("{\"uuid\":\"0f8fad5b-d9cb-469f-a165-70867728950e\",\"timestamp\":\"2023-11-14 22:13:20\",\"value\":-12.25}", json);
+    }
+
+    @Test
+    @DisplayName("JSON readings survive an encode/decode round trip at second resolution")
+    void whenDecodingJson_thenReadingIsRestored() {
+        JsonSensorCodec codec = new JsonSensorCodec(ZoneOffset.UTC);
+        SensorReading decoded = new SensorReading();
+
+        codec.decode(codec.encode(reading(49.123456)), decoded);
+
+        assertEquals(SENSOR_UUID, decoded.getUuid());
+        assertEquals(1_700_000_000_000L, decoded.getEpochMillis());
+        assertEquals(49.123456, decoded.getValue(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Binary readings are 33 bytes and round trip exactly")
+    void whenEncodingBinary_thenReadingRoundTripsExactly() {
+        BinarySensorCodec codec = new BinarySensorCodec();
+        SensorReading original = reading(Math.PI);
+        original.setEpochMillis(1_700_000_000_123L);
+        SensorReading decoded = new SensorReading();
+
+        byte[] payload = codec.encode(original);
+        codec.decode(payload, decoded);
+
+        assertEquals(BinarySensorCodec.LENGTH, payload.length);
+        assertTrue(BinarySensorCodec.isBinary(payload));
+        assertEquals(original, decoded);
+    }
+
+    @Test
+    @DisplayName("Malformed payloads are rejected")
+    void whenPayloadMalformed_thenDecodingFails() {
+        SensorReading into = new SensorReading();
+
+        assertThrows(IllegalArgumentException.class, () -> new BinarySensorCodec().decode(new byte[]{1, 2, 3}, into));
+        assertThrows(IllegalArgumentException.class,
+                () -> new JsonSensorCodec().decode("not json".getBytes(StandardCharsets.UTF_8), into));
+    }
+}
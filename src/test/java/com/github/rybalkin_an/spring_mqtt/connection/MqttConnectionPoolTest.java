@@ -0,0 +1,58 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttConnectionPoolTest {
+
+    private final ExecutorService acks = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        acks.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A numbered sequence published on each topic is sent in order on that topic's connection")
+    void whenPublishingSequencesOnManyTopics_thenEachTopicKeepsItsOrder() throws Exception {
+        List<MqttConnection> publishers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            publishers.add(new StubConnection(8, acks));
+        }
+        MqttConnectionPool pool = new MqttConnectionPool(publishers, List.of(new StubConnection(8, acks)));
+        int topics = 8;
+        int perTopic = 5_000;
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int sequence = 0; sequence < perTopic; sequence++) {
+            for (int topic = 0; topic < topics; topic++) {
+                byte[] payload = ByteBuffer.allocate(2 * Integer.BYTES).putInt(topic).putInt(sequence).array();
+                futures.add(pool.forPublish("sensors/" + topic).publish("sensors/" + topic, payload, 1));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+        for (int topic = 0; topic < topics; topic++) {
+            StubConnection connection = (StubConnection) pool.forPublish("sensors/" + topic);
+            int expected = 0;
+            for (byte[] payload : connection.sent) {
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                if (buffer.getInt() == topic) {
+                    assertEquals(expected++, buffer.getInt(), "Topic sensors/" + topic + " out of order");
+                }
+            }
+            assertEquals(perTopic, expected);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedConnectionTest {
+
+    private final ExecutorService acks = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        acks.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Publishes are sent in the order they were made while acknowledgements drain the queue concurrently")
+    void whenAcksRaceNewPublishes_thenSendOrderMatchesPublishOrder() throws Exception {
+        int count = 50_000;
+        StubConnection connection = new StubConnection(4, acks);
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            futures[i] = connection.publish("sensors/1", ByteBuffer.allocate(Integer.BYTES).putInt(i).array(), 1);
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+
+        assertEquals(count, connection.sent.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, ByteBuffer.wrap(connection.sent.get(i)).getInt(), "Publish sent out of order");
+        }
+        assertTrue(connection.maxObservedInflight.get() <= 4);
+        assertEquals(0, connection.getInflightCount());
+    }
+
+    @Test
+    @DisplayName("A publish the client throws on fails alone and the connection keeps sending")
+    void whenSendThrows_thenPublishFailsAndLaterPublishesAreSent() throws Exception {
+        StubConnection connection = new StubConnection(4, acks);
+        connection.rejectedTopic = "rejected";
+
+        CompletableFuture<Void> rejected = connection.publish("rejected", new byte[]{1}, 1);
+        CompletableFuture<Void> next = connection.publish("sensors/1", new byte[]{2}, 1);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        next.get(5, TimeUnit.SECONDS);
+        assertEquals(1, connection.sent.size());
+        assertEquals(0, connection.getInflightCount());
+    }
+
+    @Test
+    @DisplayName("Publishes with an invalid QoS or topic fail without being queued")
+    void whenQosOrTopicInvalid_thenPublishFailsWithoutBeingSent() {
+        StubConnection connection = new StubConnection(4, acks);
+
+        for (CompletableFuture<Void> future : List.of(
+                connection.publish("sensors/1", new byte[0], 5),
+                connection.publish("sensors/1", new byte[0], -1),
+                connection.publish("sensors/+", new byte[0], 1),
+                connection.publish("", new byte[0], 1))) {
+            ExecutionException error = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        }
+        assertTrue(connection.sent.isEmpty());
+        assertEquals(0, connection.getInflightCount());
+    }
+}
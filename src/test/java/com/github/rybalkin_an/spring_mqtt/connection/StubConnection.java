@@ -0,0 +1,70 @@
+package com.github.rybalkin_an.spring_mqtt.connection;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the payloads it sends and acknowledges them on the executor, the way Paho acknowledges
+ * publishes on its callback threads.
+ */
+class StubConnection extends PipelinedConnection {
+
+    final List<byte[]> sent = new CopyOnWriteArrayList<>();
+    final AtomicInteger maxObservedInflight = new AtomicInteger();
+    // Sends to this topic throw, the way Paho rejects some messages while sending
+    volatile String rejectedTopic;
+
+    private final ExecutorService acks;
+
+    StubConnection(int maxInflight, ExecutorService acks) {
+        super(maxInflight);
+        this.acks = acks;
+    }
+
+    @Override
+    PendingPublish newPublish(String topic, byte[] payload, int qos) {
+        return new PendingPublish(topic, payload, qos) {
+            @Override
+            void send() {
+                if (topic.equals(rejectedTopic)) {
+                    throw new IllegalStateException("Rejected by the client: " + topic);
+                }
+                sent.add(payload);
+                maxObservedInflight.accumulateAndGet(getInflightCount(), Math::max);
+                acks.execute(this::succeeded);
+            }
+        };
+    }
+
+    @Override
+    public String getClientId() {
+        return "stub";
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public void connect() {
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    @Override
+    public void subscribe(String topicFilter, int qos) {
+    }
+
+    @Override
+    public void unsubscribe(String topicFilter) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
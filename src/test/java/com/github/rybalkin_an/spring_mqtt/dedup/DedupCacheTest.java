@@ -0,0 +1,71 @@
+package com.github.rybalkin_an.spring_mqtt.dedup;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DedupCacheTest {
+
+    private static final long WINDOW = 60_000;
+
+    @Test
+    @DisplayName("A message seen again within the window is a duplicate, with or without the Bloom filter")
+    void whenSameMessageArrivesTwice_thenSecondIsDuplicate() {
+        for (boolean bloom : new boolean[]{false, true}) {
+            DedupCache cache = new DedupCache(1 << 20, WINDOW, bloom, 0);
+            long first = fingerprint("sensors/1", "{\"value\":1.5}", 0);
+            long other = fingerprint("sensors/1", "{\"value\":1.6}", 0);
+
+            assertTrue(cache.add(first, 0));
+            assertTrue(cache.add(other, 10));
+            assertFalse(cache.add(first, WINDOW - 1));
+            assertFalse(cache.add(other, WINDOW + 10));
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Fingerprints are forgotten two windows after they were added")
+    void whenTwoWindowsHavePassed_thenMessageIsNew() {
+        DedupCache cache = new DedupCache(1 << 20, WINDOW, false, 0);
+        long fingerprint = fingerprint("sensors/1", "reading", 0);
+
+        assertTrue(cache.add(fingerprint, 0));
+        assertFalse(cache.add(fingerprint, 2 * WINDOW - 1));
+
+        assertTrue(cache.add(fingerprint, 2 * WINDOW));
+    }
+
+    @Test
+    @DisplayName("Memory stays bounded: beyond capacity the oldest fingerprints are evicted")
+    void whenMoreMessagesThanCapacity_thenOldestAreEvicted() {
+        DedupCache cache = new DedupCache(64 * 1024, WINDOW, false, 0);
+        int count = (int) cache.capacity() * 4;
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(cache.add(fingerprint("sensors/1", Integer.toString(i), 0), 0));
+        }
+
+        assertTrue(cache.size() <= cache.capacity());
+        assertFalse(cache.add(fingerprint("sensors/1", Integer.toString(count - 1), 0), 0));
+        assertTrue(cache.add(fingerprint("sensors/1", "0", 0), 0));
+    }
+
+    @Test
+    @DisplayName("Topic, payload and trace origin all distinguish messages")
+    void whenTopicPayloadOrOriginDiffer_thenFingerprintsDiffer() {
+        long base = fingerprint("a/b", "c", 0);
+
+        assertEquals(base, fingerprint("a/b", "c", 0));
+        assertNotEquals(base, fingerprint("a/", "bc", 0));
+        assertNotEquals(base, fingerprint("a/b", "c", 1));
+        assertNotEquals(base, fingerprint("a/c", "c", 0));
+    }
+
+    private static long fingerprint(String topic, String payload, long originMicros) {
+        return DedupCache.fingerprint(topic, payload.getBytes(StandardCharsets.UTF_8), originMicros);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.rybalkin_an.spring_mqtt.dedup;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicatingHandlerTest {
+
+    private static InboundMessage message(String topic, String payload, boolean duplicate) {
+        return new InboundMessage(topic, payload.getBytes(StandardCharsets.UTF_8), 0, 0, duplicate);
+    }
+
+    @Test
+    @DisplayName("Only broker redeliveries of a seen message are dropped, repeated readings are kept")
+    void whenMessageRepeats_thenOnlyRedeliveryIsDropped() {
+        DeduplicatingHandler handler = new DeduplicatingHandler(Duration.ofMinutes(5), 1 << 20, false, List.of(""));
+
+        assertNotNull(handler.handle(message("sensors/1", "{\"value\":1.5}", false)));
+        assertNotNull(handler.handle(message("sensors/1", "{\"value\":1.5}", false)));
+        assertNull(handler.handle(message("sensors/1", "{\"value\":1.5}", true)));
+        assertNotNull(handler.handle(message("sensors/1", "{\"value\":1.6}", true)));
+        assertEquals(1, handler.getDuplicateCount());
+    }
+
+    @Test
+    @DisplayName("On configured topics any repeat is dropped, as bridged copies carry no DUP flag")
+    void whenTopicIsConfigured_thenRepeatIsDroppedWithoutDupFlag() {
+        DeduplicatingHandler handler = new DeduplicatingHandler(Duration.ofMinutes(5), 1 << 20, false, List.of("bridged/#"));
+
+        assertNotNull(handler.handle(message("bridged/sensors/1", "reading", false)));
+        assertNull(handler.handle(message("bridged/sensors/1", "reading", false)));
+        assertNotNull(handler.handle(message("sensors/1", "reading", false)));
+        assertNotNull(handler.handle(message("sensors/1", "reading", false)));
+    }
+}
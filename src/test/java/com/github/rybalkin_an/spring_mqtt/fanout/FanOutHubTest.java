@@ -0,0 +1,140 @@
+package com.github.rybalkin_an.spring_mqtt.fanout;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FanOutHubTest {
+
+    private FanOutHub<Integer> hub;
+
+    @AfterEach
+    void closeHub() {
+        hub.close();
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST keeps the newest messages of a stalled subscriber")
+    void whenBufferOverflowsWithDropOldest_thenNewestMessagesAreDelivered() throws InterruptedException {
+        hub = new FanOutHub<>(4, OverflowPolicy.DROP_OLDEST, 16, Executors.newSingleThreadExecutor());
+        RecordingSubscriber subscriber = new RecordingSubscriber(4);
+        hub.subscribe(subscriber);
+
+        for (int i = 1; i <= 6; i++) {
+            hub.publish("sensors/1", i);
+        }
+        subscriber.subscription.get().request(4);
+
+        assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 4, 5, 6), subscriber.items);
+        assertEquals(2, hub.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("DROP_NEWEST keeps the oldest messages of a stalled subscriber")
+    void whenBufferOverflowsWithDropNewest_thenOldestMessagesAreDelivered() throws InterruptedException {
+        hub = new FanOutHub<>(4, OverflowPolicy.DROP_NEWEST, 16, Executors.newSingleThreadExecutor());
+        RecordingSubscriber subscriber = new RecordingSubscriber(4);
+        hub.subscribe(subscriber);
+
+        for (int i = 1; i <= 6; i++) {
+            hub.publish("sensors/1", i);
+        }
+        SubscriberStats stats = hub.getSubscriberStats().get(0);
+        assertEquals("#", stats.topicFilter());
+        assertEquals(4, stats.queued());
+        assertEquals(2, stats.dropped());
+        assertEquals(0, stats.delivered());
+        subscriber.subscription.get().request(4);
+
+        assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3, 4), subscriber.items);
+        assertEquals(2, hub.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("DISCONNECT errors out the slow subscriber without affecting others")
+    void whenBufferOverflowsWithDisconnect_thenOnlySlowSubscriberIsDropped() throws InterruptedException {
+        hub = new FanOutHub<>(4, OverflowPolicy.DISCONNECT, 16, Executors.newSingleThreadExecutor());
+        RecordingSubscriber slow = new RecordingSubscriber(0);
+        RecordingSubscriber fast = new RecordingSubscriber(6);
+        hub.subscribe(slow);
+        hub.subscribe(fast);
+        fast.subscription.get().request(Long.MAX_VALUE);
+
+        for (int i = 1; i <= 6; i++) {
+            hub.publish("sensors/1", i);
+        }
+
+        assertTrue(slow.terminated.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(SlowConsumerException.class, slow.error.get());
+        assertTrue(fast.received.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), fast.items);
+        assertEquals(1, hub.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("Messages are delivered only to subscribers with a matching topic filter")
+    void whenPublishingToTopic_thenOnlyMatchingSubscribersReceive() throws InterruptedException {
+        hub = new FanOutHub<>(4, OverflowPolicy.DROP_OLDEST, 16, Executors.newSingleThreadExecutor());
+        RecordingSubscriber kitchen = new RecordingSubscriber(1);
+        RecordingSubscriber all = new RecordingSubscriber(2);
+        hub.subscribe("home/kitchen/+", kitchen);
+        hub.subscribe("home/#", all);
+        kitchen.subscription.get().request(Long.MAX_VALUE);
+        all.subscription.get().request(Long.MAX_VALUE);
+
+        hub.publish("home/garage/temperature", 1);
+        hub.publish("home/kitchen/temperature", 2);
+
+        assertTrue(all.received.await(5, TimeUnit.SECONDS));
+        assertTrue(kitchen.received.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), all.items);
+        assertEquals(List.of(2), kitchen.items);
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer> {
+
+        final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final List<Integer> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch received;
+        final CountDownLatch terminated = new CountDownLatch(1);
+
+        RecordingSubscriber(int expected) {
+            this.received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.set(subscription);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.rybalkin_an.spring_mqtt.logging;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageLogTest {
+
+    @Test
+    @DisplayName("Text payloads are cut to the limit with the omitted byte count")
+    void whenTextPayloadIsLong_thenPreviewIsTruncated() {
+        byte[] payload = "{\"value\":12.5,\"unit\":\"C\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("{\"value\":12.5... (12 more bytes)", MessageLog.preview(payload, 13));
+        assertEquals("{\"value\":12.5,\"unit\":\"C\"}", MessageLog.preview(payload, 64));
+    }
+
+    @Test
+    @DisplayName("Binary payloads are shown as hex")
+    void whenPayloadIsBinary_thenPreviewIsHex() {
+        byte[] payload = {(byte) 0xB1, 0x00, 0x7F, 0x10};
+
+        assertEquals("0xb100... (2 more bytes)", MessageLog.preview(payload, 4));
+        assertEquals("0xb1007f10", MessageLog.preview(payload, 64));
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedPipelineTest {
+
+    private PartitionedPipeline<int[]> pipeline;
+
+    @AfterEach
+    void closePipeline() {
+        pipeline.close();
+    }
+
+    @Test
+    @DisplayName("Items of the same key are processed in submission order across parallel lanes")
+    void whenSubmittingManyKeys_thenOrderIsKeptPerKey() throws InterruptedException {
+        int keys = 16;
+        int perKey = 2_000;
+        Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(keys * perKey);
+        pipeline = new PartitionedPipeline<>(4, keys * perKey, 32, Executors.newFixedThreadPool(4), item -> {
+            processed.computeIfAbsent(item[0], key -> new CopyOnWriteArrayList<>()).add(item[1]);
+            done.countDown();
+        });
+
+        for (int sequence = 0; sequence < perKey; sequence++) {
+            for (int key = 0; key < keys; key++) {
+                assertTrue(pipeline.submit(key, new int[]{key, sequence}));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int key = 0; key < keys; key++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int sequence = 0; sequence < perKey; sequence++) {
+                expected.add(sequence);
+            }
+            assertEquals(expected, processed.get(key));
+        }
+        assertEquals(0, pipeline.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("A full lane drops new items instead of blocking the caller")
+    void whenLaneIsFull_thenItemIsDropped() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        pipeline = new PartitionedPipeline<>(1, 2, 8, Executors.newSingleThreadExecutor(), item -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(item[0]);
+            done.countDown();
+        });
+
+        assertTrue(pipeline.submit(0, new int[]{1}));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(0, new int[]{2}));
+        assertTrue(pipeline.submit(0, new int[]{3}));
+        assertFalse(pipeline.submit(0, new int[]{4}));
+        assertEquals(2, pipeline.getQueuedCount());
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), processed);
+        assertEquals(1, pipeline.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("An item that fails to process does not stop its lane")
+    void whenProcessorThrows_thenLaneContinues() throws InterruptedException {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        pipeline = new PartitionedPipeline<>(1, 16, 8, Executors.newSingleThreadExecutor(), item -> {
+            if (item[0] == 2) {
+                throw new IllegalStateException("boom");
+            }
+            processed.add(item[0]);
+            done.countDown();
+        });
+
+        for (int i = 1; i <= 3; i++) {
+            pipeline.submit(0, new int[]{i});
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 3), processed);
+        assertEquals(1, pipeline.getFailedCount());
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.rybalkin_an.spring_mqtt.pipeline;
+
+import com.github.rybalkin_an.spring_mqtt.codec.BinarySensorCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorKeysTest {
+
+    private static final String UUID = "3f2a9c1e-7b4d-4e8a-9f10-2c3d4e5f6a7b";
+
+    private static int hash(String payload) {
+        return SensorKeys.hash(payload.getBytes(StandardCharsets.UTF_8), "sensors/1");
+    }
+
+    @Test
+    @DisplayName("Readings of one sensor share a key whatever their other fields, readings of others do not")
+    void whenPayloadsCarryUuid_thenKeyFollowsTheUuid() {
+        int key = hash("{\"uuid\":\"" + UUID + "\",\"timestamp\":\"2025-03-14 09:26:53\",\"value\":23.75}");
+
+        assertEquals(key, hash("{\"uuid\":\"" + UUID + "\",\"timestamp\":\"2025-03-14 09:26:54\",\"value\":-4.0}"));
+        assertEquals(key, hash("{ \"uuid\" : \"" + UUID + "\" }"));
+        assertNotEquals(key, hash("{\"uuid\":\"0b1c2d3e-4f50-6172-8394-a5b6c7d8e9f0\",\"value\":23.75}"));
+    }
+
+    @Test
+    @DisplayName("Binary readings are keyed by their uuid bytes")
+    void whenPayloadIsBinary_thenKeyFollowsTheUuid() {
+        byte[] first = ByteBuffer.allocate(BinarySensorCodec.LENGTH)
+                .put(BinarySensorCodec.MARKER).putLong(1).putLong(2).putLong(100).putDouble(1.5).array();
+        byte[] second = ByteBuffer.allocate(BinarySensorCodec.LENGTH)
+                .put(BinarySensorCodec.MARKER).putLong(1).putLong(2).putLong(200).putDouble(-3).array();
+        byte[] other = ByteBuffer.allocate(BinarySensorCodec.LENGTH)
+                .put(BinarySensorCodec.MARKER).putLong(1).putLong(3).putLong(100).putDouble(1.5).array();
+
+        assertEquals(SensorKeys.hash(first, "a"), SensorKeys.hash(second, "b"));
+        assertNotEquals(SensorKeys.hash(first, "a"), SensorKeys.hash(other, "a"));
+    }
+
+    @Test
+    @DisplayName("Payloads without a uuid near the start fall back to the topic")
+    void whenNoUuidIsFound_thenKeyIsTheTopic() {
+        assertEquals("sensors/1".hashCode(), hash("ON"));
+        assertEquals("sensors/1".hashCode(), hash("{\"uuid\":42}"));
+        assertEquals("sensors/1".hashCode(), hash("{\"uuid\":\"unterminated"));
+        assertEquals("sensors/1".hashCode(), hash("{\"padding\":\"" + "x".repeat(200) + "\",\"uuid\":\"" + UUID + "\"}"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.rybalkin_an.spring_mqtt.routing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopicTrieTest {
+
+    private final TopicTrie<String> trie = new TopicTrie<>();
+
+    private List<String> match(String topic) {
+        List<String> matched = new ArrayList<>();
+        trie.match(topic, matched::add);
+        matched.sort(null);
+        return matched;
+    }
+
+    @Test
+    @DisplayName("Exact, single-level and multi-level filters match with MQTT semantics")
+    void whenMatchingTopic_thenWildcardFiltersApply() {
+        trie.add("sensors/kitchen/temperature", "exact");
+        trie.add("sensors/+/temperature", "plus");
+        trie.add("sensors/#", "hash");
+        trie.add("#", "all");
+
+        assertEquals(List.of("all", "exact", "hash", "plus"), match("sensors/kitchen/temperature"));
+        assertEquals(List.of("all", "hash"), match("sensors/kitchen/humidity"));
+        assertEquals(List.of("all", "hash"), match("sensors"));
+        assertEquals(List.of("all"), match("actuators/valve"));
+    }
+
+    @Test
+    @DisplayName("Wildcards at the first level do not match $-topics")
+    void whenTopicStartsWithDollar_thenLeadingWildcardsDoNotMatch() {
+        trie.add("#", "all");
+        trie.add("+/broker/uptime", "plus");
+        trie.add("$SYS/#", "sys");
+
+        assertEquals(List.of("sys"), match("$SYS/broker/uptime"));
+    }
+
+    @Test
+    @DisplayName("Removed filters stop matching")
+    void whenFilterRemoved_thenNoLongerMatches() {
+        trie.add("sensors/+", "first");
+        trie.add("sensors/+", "second");
+
+        assertTrue(trie.remove("sensors/+", "first"));
+        assertEquals(List.of("second"), match("sensors/1"));
+        assertTrue(trie.remove("sensors/+", "second"));
+        assertFalse(trie.remove("sensors/+", "second"));
+        assertTrue(trie.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Invalid wildcard placement is rejected")
+    void whenFilterInvalid_thenRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.validateFilter("sensors/#/temperature"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.validateFilter("sensors/kitchen+"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.validateFilter(""));
+        assertDoesNotThrow(() -> TopicTrie.validateFilter("sensors/+/#"));
+    }
+
+    @Test
+    @DisplayName("Static matcher agrees with the trie")
+    void whenUsingStaticMatcher_thenSameSemanticsAsTrie() {
+        assertTrue(TopicTrie.matches("sensors/#", "sensors"));
+        assertTrue(TopicTrie.matches("sensors/+/temperature", "sensors/kitchen/temperature"));
+        assertFalse(TopicTrie.matches("sensors/+", "sensors/kitchen/temperature"));
+        assertFalse(TopicTrie.matches("sensors/kitchen", "sensors"));
+        assertFalse(TopicTrie.matches("#", "$SYS/broker"));
+        assertTrue(TopicTrie.matches("a//c", "a//c"));
+    }
+
+    @Test
+    @DisplayName("Shared subscriptions route by the filter after the share name")
+    void whenFilterIsShared_thenPrefixIsStripped() {
+        assertEquals("sensors/#", TopicTrie.unshared("$share/aggregators/sensors/#"));
+        assertEquals("sensors/+/temperature", TopicTrie.unshared("sensors/+/temperature"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.unshared("$share//sensors/#"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.unshared("$share/group"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTrie.unshared("$share/gro+up/sensors"));
+    }
+
+    @Test
+    @DisplayName("A trie of configured filters tells whether any of them matches")
+    void whenBuildingFromConfiguredFilters_thenAnyMatchIsFound() {
+        TopicTrie<String> filters = TopicTrie.of(List.of(" sensors/+/temperature", "", "alerts/#"));
+
+        assertTrue(filters.matchesAny("sensors/kitchen/temperature"));
+        assertTrue(filters.matchesAny("alerts"));
+        assertTrue(filters.matchesAny("alerts/fire/1"));
+        assertFalse(filters.matchesAny("sensors/kitchen"));
+        assertFalse(filters.matchesAny("other"));
+        assertFalse(TopicTrie.of(List.of("")).matchesAny("other"));
+    }
+}
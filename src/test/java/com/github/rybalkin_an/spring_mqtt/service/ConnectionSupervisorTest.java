@@ -0,0 +1,232 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionState;
+import com.github.rybalkin_an.spring_mqtt.model.ConnectionStatus;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionSupervisorTest {
+
+    private static final long INITIAL_DELAY_MS = 20;
+    private static final long MAX_DELAY_MS = 80;
+
+    private final FlakyConnection publisher = new FlakyConnection("pub");
+    private final FlakyConnection subscriber = new FlakyConnection("sub");
+    private final MqttConnectionPool pool = new MqttConnectionPool(List.of(publisher), List.of(subscriber));
+    private final MqttSubscriber mqttSubscriber = new MqttSubscriber(pool);
+    private final ConnectionSupervisor supervisor =
+            new ConnectionSupervisor(pool, mqttSubscriber, INITIAL_DELAY_MS, MAX_DELAY_MS);
+
+    @AfterEach
+    void stop() {
+        subscriber.release.countDown();
+        supervisor.stop();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within 5 s");
+            Thread.sleep(5);
+        }
+    }
+
+    private ConnectionStatus status(FlakyConnection connection) {
+        return supervisor.getHealth().connections().stream()
+                .filter(status -> status.clientId().equals(connection.getClientId()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private boolean isConnected(FlakyConnection connection) {
+        return status(connection).state() == ConnectionState.CONNECTED;
+    }
+
+    @Test
+    @DisplayName("Startup does not wait for connections that are slow to establish")
+    void whenBrokerIsSlow_thenStartReturnsBeforeConnecting() throws Exception {
+        subscriber.blockConnect = true;
+
+        supervisor.start();
+
+        await(() -> subscriber.connectAttempts.size() == 1);
+        assertFalse(subscriber.isConnected());
+        subscriber.release.countDown();
+        await(() -> isConnected(subscriber) && isConnected(publisher));
+        assertEquals("UP", supervisor.getHealth().status());
+    }
+
+    @Test
+    @DisplayName("Failed attempts are retried with growing delays, capped at the max delay")
+    void whenConnectFails_thenRetriesBackOff() throws Exception {
+        publisher.failures = 4;
+
+        supervisor.start();
+        await(() -> isConnected(publisher));
+
+        List<Long> attempts = publisher.connectAttempts;
+        assertEquals(5, attempts.size());
+        for (int failed = 1; failed < attempts.size(); failed++) {
+            long ceiling = Math.min(MAX_DELAY_MS, INITIAL_DELAY_MS << failed);
+            long waited = TimeUnit.NANOSECONDS.toMillis(attempts.get(failed) - attempts.get(failed - 1));
+            assertTrue(waited >= ceiling / 2, "Attempt " + (failed + 1) + " after " + waited + " ms");
+        }
+        ConnectionStatus status = status(publisher);
+        assertEquals(0, status.attempts());
+        assertNull(status.lastError());
+    }
+
+    @Test
+    @DisplayName("Active topic filters are subscribed once the connection is up, and again after it drops")
+    void whenSubscriberConnects_thenSubscriptionsAreRestored() throws Exception {
+        mqttSubscriber.subscribe("sensors/#", 1);
+        assertTrue(subscriber.subscribed.isEmpty());
+
+        supervisor.start();
+        await(() -> isConnected(subscriber));
+        assertEquals(List.of("sensors/#"), subscriber.subscribed);
+
+        subscriber.drop(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+        await(() -> subscriber.subscribed.size() == 2 && isConnected(subscriber));
+        assertEquals(List.of("sensors/#", "sensors/#"), subscriber.subscribed);
+    }
+
+    @Test
+    @DisplayName("A suspended connection is not reconnected until resumed")
+    void whenSuspended_thenConnectionStaysDownUntilResumed() throws Exception {
+        mqttSubscriber.subscribe("sensors/#", 1);
+        supervisor.start();
+        await(() -> isConnected(subscriber) && isConnected(publisher));
+
+        supervisor.disconnect();
+        subscriber.drop(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+        Thread.sleep(3 * MAX_DELAY_MS);
+
+        assertEquals(ConnectionState.DISCONNECTED, status(subscriber).state());
+        assertEquals(1, subscriber.connectAttempts.size());
+        assertEquals("DOWN", supervisor.getHealth().status());
+
+        supervisor.reconnect();
+
+        assertEquals("UP", supervisor.getHealth().status());
+        assertEquals(List.of("sensors/#", "sensors/#"), subscriber.subscribed);
+    }
+
+    @Test
+    @DisplayName("A resume that fails reports the error and goes back to retrying")
+    void whenResumeFails_thenErrorIsThrownAndRetried() throws Exception {
+        supervisor.start();
+        await(() -> isConnected(publisher));
+        supervisor.disconnect();
+
+        publisher.failures = 1;
+        assertThrows(MqttException.class, supervisor::reconnect);
+        assertEquals(ConnectionState.RECONNECTING, status(publisher).state());
+        assertEquals(1, status(publisher).attempts());
+
+        await(() -> isConnected(publisher));
+    }
+
+    /**
+     * Fails a given number of connects, then connects; records connect attempts and subscriptions.
+     */
+    private static final class FlakyConnection implements MqttConnection {
+
+        private final String clientId;
+        private final List<Long> connectAttempts = new CopyOnWriteArrayList<>();
+        private final List<String> subscribed = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int failures;
+        private volatile boolean blockConnect;
+        private volatile boolean connected;
+        private volatile Consumer<Throwable> connectionLostListener;
+
+        private FlakyConnection(String clientId) {
+            this.clientId = clientId;
+        }
+
+        void drop(Throwable cause) {
+            connected = false;
+            connectionLostListener.accept(cause);
+        }
+
+        @Override
+        public void connect() throws MqttException {
+            connectAttempts.add(System.nanoTime());
+            if (blockConnect) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failures > 0) {
+                failures--;
+                throw new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR);
+            }
+            connected = true;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void subscribe(String topicFilter, int qos) {
+            subscribed.add(topicFilter);
+        }
+
+        @Override
+        public void unsubscribe(String topicFilter) {
+            subscribed.remove(topicFilter);
+        }
+
+        @Override
+        public void setConnectionLostListener(Consumer<Throwable> listener) {
+            this.connectionLostListener = listener;
+        }
+
+        @Override
+        public void setMessageListener(MessageListener listener) {
+        }
+
+        @Override
+        public CompletableFuture<Void> publish(String topic, byte[] payload, int qos) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public String getClientId() {
+            return clientId;
+        }
+
+        @Override
+        public int getInflightCount() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
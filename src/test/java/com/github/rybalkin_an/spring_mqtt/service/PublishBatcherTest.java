@@ -0,0 +1,50 @@
+package com.github.rybalkin_an.spring_mqtt.service;
+
+import com.github.rybalkin_an.spring_mqtt.model.PublishOutcome;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PublishBatcherTest {
+
+    private static final class RecordingPublisher extends MqttPublisher {
+
+        private final List<Integer> published = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public CompletableFuture<PublishOutcome> publishBatch(List<byte[]> payloads, String topic, int qos, long originMicros) {
+            for (byte[] payload : payloads) {
+                published.add(ByteBuffer.wrap(payload).getInt());
+            }
+            return CompletableFuture.completedFuture(PublishOutcome.PUBLISHED);
+        }
+    }
+
+    @Test
+    @DisplayName("A numbered sequence is published in order while size and delay flushes race")
+    void whenFlushesRace_thenBatchesArePublishedInOrder() throws Exception {
+        RecordingPublisher publisher = new RecordingPublisher();
+        PublishBatcher batcher = new PublishBatcher(publisher, List.of("sensors/#"), 2, 1);
+        int count = 200_000;
+
+        List<CompletableFuture<PublishOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            outcomes.add(batcher.publish(ByteBuffer.allocate(Integer.BYTES).putInt(i).array(), "sensors/1", 1, false));
+        }
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        batcher.stop();
+
+        assertEquals(count, publisher.published.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, publisher.published.get(i), "Out of order at " + i);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rybalkin_an.spring_mqtt.store;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import com.github.rybalkin_an.spring_mqtt.model.SeriesSlice;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorSeriesTest {
+
+    private static final UUID SENSOR_UUID = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+
+    @Test
+    @DisplayName("Once full, the ring keeps only the newest readings, oldest first")
+    void whenRingWrapsAround_thenNewestReadingsAreKept() {
+        SensorSeries series = new SensorSeries(SENSOR_UUID, 4);
+        for (int i = 1; i <= 6; i++) {
+            series.add(i * 1000L, i);
+        }
+
+        SeriesSlice all = series.last(10);
+        assertEquals(SENSOR_UUID, all.uuid());
+        assertArrayEquals(new long[]{3000, 4000, 5000, 6000}, all.epochMillis());
+        assertArrayEquals(new double[]{3, 4, 5, 6}, all.values());
+
+        assertArrayEquals(new double[]{5, 6}, series.last(2).values());
+    }
+
+    @Test
+    @DisplayName("Range queries are half-open and see across the wrap point")
+    void whenQueryingRange_thenReadingsWithinBoundsAreReturned() {
+        SensorSeries series = new SensorSeries(SENSOR_UUID, 4);
+        for (int i = 1; i <= 6; i++) {
+            series.add(i * 1000L, i);
+        }
+
+        assertArrayEquals(new double[]{4, 5}, series.range(3500, 6000).values());
+        assertArrayEquals(new double[]{3, 4, 5, 6}, series.range(0, Long.MAX_VALUE).values());
+        assertEquals(0, series.range(7000, 8000).values().length);
+    }
+
+    @Test
+    @DisplayName("Out-of-order timestamps are clamped so the ring stays sorted")
+    void whenTimestampGoesBackwards_thenItIsClamped() {
+        SensorSeries series = new SensorSeries(SENSOR_UUID, 4);
+        series.add(2000, 1);
+        series.add(1000, 2);
+
+        assertArrayEquals(new long[]{2000, 2000}, series.last(2).epochMillis());
+        assertArrayEquals(new double[]{1, 2}, series.range(2000, 2001).values());
+    }
+
+    @Test
+    @DisplayName("Topic history returns the last value and the most recent messages")
+    void whenTopicHistoryWraps_thenLatestAndRecentAreKept() {
+        TopicHistory history = new TopicHistory(2);
+        assertNull(history.latest());
+        for (int i = 1; i <= 3; i++) {
+            history.add(new InboundMessage("sensors/1", ("m" + i).getBytes(StandardCharsets.UTF_8)), i);
+        }
+
+        assertEquals("m3", history.latest().message().payloadAsString());
+        List<StoredMessage> recent = history.recent(5);
+        assertEquals(2, recent.size());
+        assertEquals("m2", recent.get(0).message().payloadAsString());
+        assertEquals(3, recent.get(1).receivedAt());
+    }
+}
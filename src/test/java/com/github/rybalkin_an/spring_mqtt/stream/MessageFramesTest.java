@@ -0,0 +1,61 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageFramesTest {
+
+    @Test
+    @DisplayName("Delivered messages are framed with length-prefixed topic and payload")
+    void whenEncodingMessage_thenTopicAndPayloadAreLengthPrefixed() {
+        byte[] payload = {0, (byte) 0xFF, 42};
+
+        ByteBuffer frame = ByteBuffer.wrap(MessageFrames.encode(new InboundMessage("a/\u00e9", payload)));
+
+        assertEquals(4, frame.getShort());
+        byte[] topic = new byte[4];
+        frame.get(topic);
+        assertEquals("a/\u00e9", new String(topic, StandardCharsets.UTF_8));
+        assertEquals(3, frame.getInt());
+        byte[] body = new byte[3];
+        frame.get(body);
+        assertArrayEquals(payload, body);
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("Publish frames round-trip, including ids above Integer.MAX_VALUE and empty payloads")
+    void whenDecodingEncodedPublish_thenFieldsAreRestored() {
+        MessageFrames.PublishFrame publish = new MessageFrames.PublishFrame(
+                4_000_000_000L, 2, "sensors/kitchen", "{\"value\":1.5}".getBytes(StandardCharsets.UTF_8));
+
+        MessageFrames.PublishFrame decoded = MessageFrames.decodePublish(MessageFrames.encodePublish(publish));
+
+        assertEquals(publish.id(), decoded.id());
+        assertEquals(2, decoded.qos());
+        assertEquals("sensors/kitchen", decoded.topic());
+        assertArrayEquals(publish.payload(), decoded.payload());
+        assertEquals(0, MessageFrames.decodePublish(
+                MessageFrames.encodePublish(new MessageFrames.PublishFrame(1, 0, "t", new byte[0]))).payload().length);
+    }
+
+    @Test
+    @DisplayName("Truncated publish frames, empty topics and invalid QoS are rejected")
+    void whenPublishFrameIsInvalid_thenRejected() {
+        byte[] frame = MessageFrames.encodePublish(new MessageFrames.PublishFrame(1, 1, "sensors", new byte[0]));
+
+        assertThrows(IllegalArgumentException.class, () -> MessageFrames.decodePublish(Arrays.copyOf(frame, 5)));
+        assertThrows(IllegalArgumentException.class, () -> MessageFrames.decodePublish(Arrays.copyOf(frame, frame.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> MessageFrames.decodePublish(new byte[]{0, 0, 0, 1, 1, 0, 0}));
+        byte[] badQos = frame.clone();
+        badQos[4] = 3;
+        assertThrows(IllegalArgumentException.class, () -> MessageFrames.decodePublish(badQos));
+    }
+}
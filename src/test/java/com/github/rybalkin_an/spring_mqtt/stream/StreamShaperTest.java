@@ -0,0 +1,141 @@
+package com.github.rybalkin_an.spring_mqtt.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.rybalkin_an.spring_mqtt.model.InboundMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamShaperTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(100);
+
+    private static InboundMessage message(String topic, String payload) {
+        return new InboundMessage(topic, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Flux<String> shape(Flux<InboundMessage> messages, StreamMode mode, int batchSize) {
+        return StreamShaper.shape(messages, mode, WINDOW, batchSize, PayloadEncoding.UTF8);
+    }
+
+    @Test
+    @DisplayName("PASSTHROUGH emits every message in order")
+    void whenPassthrough_thenEveryMessageIsEmitted() {
+        StepVerifier.create(shape(Flux.just(message("a", "1"), message("a", "2"), message("b", "3")), StreamMode.PASSTHROUGH, 10))
+                .expectNext("1", "2", "3")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("LATEST skips intermediate messages of a topic while the client has no demand")
+    void whenLatestAndClientIsSlow_thenIntermediateMessagesAreSkipped() {
+        Flux<InboundMessage> messages = Flux.just(message("a", "a1"), message("a", "a2"), message("a", "a3"), message("b", "b1"));
+
+        StepVerifier.create(shape(messages, StreamMode.LATEST, 10), 0)
+                .recordWith(ArrayList::new)
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(payload -> true)
+                .consumeRecordedWith(recorded -> {
+                    assertTrue(recorded.contains("a3"));
+                    assertTrue(recorded.contains("b1"));
+                    assertFalse(recorded.contains("a2"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("SAMPLE emits at most about one message per topic per window")
+    void whenSample_thenMessagesAreThinnedPerWindow() {
+        StepVerifier.withVirtualTime(() -> shape(Flux.interval(Duration.ofMillis(10)).take(25)
+                        .map(i -> message("a", Long.toString(i))), StreamMode.SAMPLE, 10))
+                .recordWith(ArrayList::new)
+                .thenAwait(Duration.ofSeconds(1))
+                .thenConsumeWhile(payload -> true)
+                .consumeRecordedWith(recorded -> assertTrue(recorded.size() >= 2 && recorded.size() <= 4,
+                        "Sampled " + recorded.size() + " of 25 messages"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("BATCH emits JSON arrays of up to batchSize messages")
+    void whenBatch_thenMessagesAreGroupedIntoArrays() {
+        Flux<InboundMessage> messages = Flux.range(0, 5).map(i -> message("a", "{\"n\":" + i + "}"));
+
+        StepVerifier.create(shape(messages, StreamMode.BATCH, 2))
+                .expectNext("[{\"n\":0},{\"n\":1}]", "[{\"n\":2},{\"n\":3}]", "[{\"n\":4}]")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("BATCH waits for a slow client instead of failing when windows elapse without demand")
+    void whenBatchAndClientIsSlow_thenStreamWaitsForDemand() {
+        StepVerifier.withVirtualTime(() -> shape(Flux.interval(Duration.ofMillis(10)).onBackpressureBuffer()
+                        .map(i -> message("a", Long.toString(i))), StreamMode.BATCH, 50), 1)
+                .thenAwait(WINDOW)
+                .expectNextCount(1)
+                .thenAwait(Duration.ofSeconds(2))
+                .thenRequest(2)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Only well-formed JSON payloads are embedded in a batch, anything else is quoted")
+    void whenBatchHasMalformedJson_thenItIsEmbeddedAsString() throws Exception {
+        List<InboundMessage> batch = List.of(
+                message("a", " {\"value\":1} "),
+                message("a", "{\"a\":"),
+                message("a", "[1,2] trailing"),
+                message("a", "plain"));
+
+        JsonNode array = new ObjectMapper().readTree(StreamShaper.toJsonArray(batch, PayloadEncoding.UTF8));
+
+        assertEquals(4, array.size());
+        assertEquals(1, array.get(0).get("value").asInt());
+        assertEquals("{\"a\":", array.get(1).asText());
+        assertEquals("[1,2] trailing", array.get(2).asText());
+        assertEquals("plain", array.get(3).asText());
+    }
+
+    @Test
+    @DisplayName("A per-topic group completes once its topic has been idle, and stays open while messages arrive")
+    void whenTopicIsIdle_thenGroupCompletes() {
+        Duration idle = Duration.ofSeconds(30);
+
+        StepVerifier.withVirtualTime(() -> StreamShaper.untilIdle(Flux.interval(Duration.ofSeconds(10)).take(5)
+                        .concatWith(Flux.never()), idle))
+                .thenAwait(Duration.ofSeconds(50))
+                .expectNextCount(5)
+                .expectNoEvent(Duration.ofSeconds(10))
+                .thenAwait(Duration.ofSeconds(60))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("SAMPLE keeps delivering a topic that comes back after its group expired")
+    void whenSampledTopicReturnsAfterIdle_thenItIsDeliveredAgain() {
+        Sinks.Many<InboundMessage> messages = Sinks.many().multicast().onBackpressureBuffer();
+
+        StepVerifier.withVirtualTime(() -> shape(messages.asFlux(), StreamMode.SAMPLE, 10))
+                .then(() -> messages.tryEmitNext(message("a", "a1")))
+                .thenAwait(WINDOW)
+                .expectNext("a1")
+                .thenAwait(StreamShaper.IDLE_GROUP_TIMEOUT.multipliedBy(3))
+                .then(() -> messages.tryEmitNext(message("a", "a2")))
+                .thenAwait(WINDOW)
+                .expectNext("a2")
+                .then(messages::tryEmitComplete)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.rybalkin_an.spring_mqtt.tracing;
+
+import com.github.rybalkin_an.spring_mqtt.model.SlowMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowestMessagesTest {
+
+    @Test
+    @DisplayName("Only the slowest messages are kept, slowest first")
+    void whenOfferingMoreThanSize_thenSlowestAreKept() {
+        SlowestMessages slowest = new SlowestMessages(3, 1000, 0);
+
+        for (int latency : new int[]{5, 40, 10, 30, 20, 1}) {
+            slowest.offer("sensors/" + latency, 100, 102, 100 + latency, 8, 0);
+        }
+
+        List<SlowMessage> snapshot = slowest.snapshot(0);
+        assertEquals(List.of(40L, 30L, 20L), snapshot.stream().map(SlowMessage::egressMicros).toList());
+        assertEquals("sensors/40", snapshot.get(0).topic());
+        assertEquals(2, snapshot.get(0).brokerMicros());
+    }
+
+    @Test
+    @DisplayName("Messages are forgotten after two windows")
+    void whenWindowsPass_thenOldMessagesExpire() {
+        SlowestMessages slowest = new SlowestMessages(3, 1000, 0);
+        slowest.offer("sensors/1", 0, 0, 500, 8, 0);
+        slowest.offer("sensors/2", 0, 0, 100, 8, 1500);
+
+        assertEquals(List.of(500L, 100L), slowest.snapshot(1500).stream().map(SlowMessage::egressMicros).toList());
+        assertEquals(List.of(100L), slowest.snapshot(2600).stream().map(SlowMessage::egressMicros).toList());
+        assertTrue(slowest.snapshot(5000).isEmpty());
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnection;
+import com.github.rybalkin_an.spring_mqtt.connection.MqttConnectionPool;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboxTest {
+
+    private Path directory;
+    private Outbox outbox;
+    private final RecordingConnection connection = new RecordingConnection();
+    private long now = System.currentTimeMillis();
+
+    @BeforeEach
+    void open() throws IOException {
+        directory = Files.createTempDirectory("outbox-test");
+        MqttConnectionPool pool = new MqttConnectionPool(List.of(connection), List.of(connection));
+        outbox = new Outbox(pool, directory.toString(), 1 << 16, 1_000_000, 100);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        outbox.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void append(String... payloads) throws IOException {
+        for (String payload : payloads) {
+            outbox.append(payload.getBytes(StandardCharsets.UTF_8), "sensors/1", 1);
+        }
+    }
+
+    private void drain() {
+        now += 1000;
+        outbox.drain(now);
+    }
+
+    @Test
+    @DisplayName("Buffered messages are drained in order once the connection is up")
+    void whenConnected_thenBufferedMessagesAreSentInOrder() throws IOException {
+        append("a", "b", "c");
+
+        drain();
+
+        assertEquals(List.of("a", "b", "c"), connection.published);
+        assertEquals(3, outbox.getDrainedCount());
+        assertFalse(outbox.hasBacklog());
+    }
+
+    @Test
+    @DisplayName("A batch that is only partly acknowledged is retried from the first unacknowledged message")
+    void whenConnectionDropsMidBatch_thenDrainResumesAtFirstUnacknowledged() throws IOException {
+        append("a", "b", "c", "d");
+        connection.outcome = payload -> payload.equals("c")
+                ? CompletableFuture.failedFuture(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST))
+                : CompletableFuture.completedFuture(null);
+
+        drain();
+        assertEquals(2, outbox.getDrainedCount());
+        assertTrue(outbox.hasBacklog());
+
+        connection.outcome = payload -> CompletableFuture.completedFuture(null);
+        drain();
+
+        assertEquals(List.of("a", "b", "c", "d", "c", "d"), connection.published);
+        assertEquals(4, outbox.getDrainedCount());
+        assertFalse(outbox.hasBacklog());
+    }
+
+    @Test
+    @DisplayName("A batch is kept if sending it throws, rather than committed as drained")
+    void whenSendThrows_thenWholeBatchIsRetried() throws IOException {
+        append("a", "b");
+        connection.outcome = payload -> {
+            throw new IllegalStateException("Client closed");
+        };
+
+        drain();
+        assertTrue(outbox.hasBacklog());
+
+        connection.outcome = payload -> CompletableFuture.completedFuture(null);
+        drain();
+
+        assertEquals(List.of("a", "b"), connection.published);
+        assertEquals(2, outbox.getDrainedCount());
+        assertFalse(outbox.hasBacklog());
+    }
+
+    @Test
+    @DisplayName("The backlog stays pending while a drained batch awaits its acknowledgements")
+    void whenBatchIsInFlight_thenBacklogIsPending() throws Exception {
+        append("a");
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        connection.outcome = payload -> ack;
+
+        Thread drainer = new Thread(this::drain);
+        drainer.start();
+        while (connection.published.isEmpty()) {
+            Thread.onSpinWait();
+        }
+        assertTrue(outbox.hasBacklog());
+
+        ack.complete(null);
+        drainer.join(5000);
+        assertFalse(drainer.isAlive());
+        assertFalse(outbox.hasBacklog());
+    }
+
+    @Test
+    @DisplayName("Messages that could never be published are not buffered")
+    void whenQosOrTopicInvalid_thenAppendIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> outbox.append(new byte[1], "sensors/1", 3));
+        assertThrows(IllegalArgumentException.class, () -> outbox.append(new byte[1], "sensors/#", 1));
+        assertFalse(outbox.hasBacklog());
+    }
+
+    private static final class RecordingConnection implements MqttConnection {
+
+        private final List<String> published = new CopyOnWriteArrayList<>();
+        private volatile Function<String, CompletableFuture<Void>> outcome = payload -> CompletableFuture.completedFuture(null);
+
+        @Override
+        public CompletableFuture<Void> publish(String topic, byte[] payload, int qos) {
+            String text = new String(payload, StandardCharsets.UTF_8);
+            CompletableFuture<Void> future = outcome.apply(text);
+            published.add(text);
+            return future;
+        }
+
+        @Override
+        public String getClientId() {
+            return "recording";
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public int getInflightCount() {
+            return 0;
+        }
+
+        @Override
+        public void setMessageListener(MessageListener listener) {
+        }
+
+        @Override
+        public void setConnectionLostListener(Consumer<Throwable> listener) {
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void subscribe(String topicFilter, int qos) {
+        }
+
+        @Override
+        public void unsubscribe(String topicFilter) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.rybalkin_an.spring_mqtt.wal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentLogTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("wal-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<LogRecord> records) {
+        return records.stream().map(record -> new String(record.payload(), StandardCharsets.UTF_8)).toList();
+    }
+
+    @Test
+    @DisplayName("Records are read back in order across segments")
+    void whenAppendingAcrossSegments_thenRecordsAreReadInOrder() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            for (int i = 0; i < 20; i++) {
+                log.append(i, 1, "sensors/" + i, bytes("message-" + i));
+            }
+
+            List<LogRecord> records = log.read(100, 0);
+
+            assertEquals(20, records.size());
+            assertEquals("message-0", payloads(records).get(0));
+            assertEquals("message-19", payloads(records).get(19));
+            assertEquals("sensors/7", records.get(7).topic());
+            assertEquals(1, records.get(7).qos());
+            assertFalse(log.hasUnread());
+        }
+    }
+
+    @Test
+    @DisplayName("The committed cursor and unread records survive a restart")
+    void whenReopening_thenReadingResumesAfterCommittedRecords() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(i, 1, "t", bytes("m" + i));
+            }
+            List<LogRecord> batch = log.read(5, 0);
+            log.rewindTo(batch.get(3));
+            log.commit();
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            assertEquals(7, log.countUnread());
+            assertEquals(List.of("m3", "m4", "m5", "m6", "m7", "m8", "m9"), payloads(log.read(100, 0)));
+        }
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of a segment is discarded on recovery")
+    void whenLastRecordIsCorrupt_thenItIsDiscarded() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            log.append(1, 1, "t", bytes("kept"));
+            log.append(2, 1, "t", bytes("torn"));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(Segment.pathFor(directory, 0).toFile(), "rw")) {
+            int secondRecord = Segment.recordBytes(bytes("t"), bytes("kept"));
+            file.seek(secondRecord + Segment.HEADER_BYTES + 12);
+            file.write('X');
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            assertEquals(List.of("kept"), payloads(log.read(100, 0)));
+            log.append(3, 1, "t", bytes("next"));
+            assertEquals(List.of("next"), payloads(log.read(100, 0)));
+        }
+    }
+
+    @Test
+    @DisplayName("Expired records are skipped and the size cap drops the oldest segment")
+    void whenRetentionOrCapIsExceeded_thenOldRecordsAreDiscarded() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 40; i++) {
+                log.append(i, 0, "t", bytes("message-" + i));
+            }
+
+            assertTrue(log.getDroppedCount() > 0);
+            assertEquals(2 * SEGMENT_BYTES, log.sizeBytes());
+            assertEquals(40 - log.getDroppedCount(), log.countUnread());
+
+            List<LogRecord> records = log.read(100, 35);
+            assertEquals("message-35", payloads(records).get(0));
+            assertEquals("message-39", payloads(records).get(records.size() - 1));
+            assertEquals(40 - log.getDroppedCount() - 5, log.getExpiredCount());
+        }
+    }
+
+    @Test
+    @DisplayName("A directory can only be used by one open log at a time")
+    void whenDirectoryIsInUse_thenSecondLogFailsToOpen() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            log.append(1, 1, "t", bytes("m"));
+
+            assertThrows(IOException.class, () -> new SegmentLog(directory, SEGMENT_BYTES, 1 << 20));
+        }
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_BYTES, 1 << 20)) {
+            assertEquals(1, log.countUnread());
+        }
+    }
+
+    @Test
+    @DisplayName("Topics longer than 32767 bytes are read back intact")
+    void whenTopicIsLong_thenItIsReadBackIntact() throws IOException {
+        String topic = "a".repeat(40_000);
+        try (SegmentLog log = new SegmentLog(directory, 1 << 16, 1 << 20)) {
+            log.append(0, 1, topic, bytes("payload"));
+
+            List<LogRecord> records = log.read(1, 0);
+
+            assertEquals(topic, records.get(0).topic());
+            assertEquals("payload", payloads(records).get(0));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.rybalkin_an.spring_mqtt.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("embedded")
+public class MqttWebSocketHandlerTest {
+
+    @LocalServerPort
+    private Integer randomServerPort;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Sinks.Many<String> commands = Sinks.many().unicast().onBackpressureBuffer();
+    private final BlockingQueue<JsonNode> events = new LinkedBlockingQueue<>();
+    private final String topic = "ws-test/" + UUID.randomUUID();
+    private Disposable connection;
+
+    @BeforeEach
+    void connect() {
+        connection = new ReactorNettyWebSocketClient()
+                .execute(URI.create("ws://localhost:" + randomServerPort + "/mqtt/ws"), session -> session
+                        .send(commands.asFlux().map(session::textMessage))
+                        .and(session.receive()
+                                .map(WebSocketMessage::getPayloadAsText)
+                                .doOnNext(text -> events.add(parse(text)))
+                                .then()))
+                .subscribe();
+    }
+
+    @AfterEach
+    void disconnect() {
+        connection.dispose();
+    }
+
+    private JsonNode parse(String text) {
+        try {
+            return objectMapper.readTree(text);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(String command) {
+        commands.tryEmitNext(command);
+    }
+
+    private JsonNode next() throws InterruptedException {
+        JsonNode event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event, "No event within 10 seconds");
+        return event;
+    }
+
+    private void publish(long id, String payload) {
+        send("{\"op\":\"publish\",\"id\":" + id + ",\"topic\":\"" + topic + "\",\"qos\":1,\"payload\":\"" + payload + "\"}");
+    }
+
+    /**
+     * @return the payloads of the next {@code count} message events, skipping acknowledgements.
+     */
+    private List<String> nextMessages(int count) throws InterruptedException {
+        List<String> payloads = new ArrayList<>();
+        while (payloads.size() < count) {
+            JsonNode event = next();
+            if (event.get("type").asText().equals("message")) {
+                payloads.add(event.get("payload").asText());
+            }
+        }
+        return payloads;
+    }
+
+    @Test
+    @DisplayName("Messages are only delivered while the subscription has credit, and topping it up resumes delivery")
+    void whenCreditRunsOut_thenDeliveryWaitsForMoreCredit() throws Exception {
+        send("{\"op\":\"subscribe\",\"id\":1,\"topic\":\"" + topic + "\",\"qos\":1,\"credit\":1}");
+        JsonNode subscribed = next();
+        assertEquals("ack", subscribed.get("type").asText());
+        assertEquals(1, subscribed.get("id").asLong());
+
+        publish(2, "m1");
+        publish(3, "m2");
+        publish(4, "m3");
+        assertEquals(List.of("m1"), nextMessages(1));
+        Thread.sleep(500);
+        assertTrue(events.stream().noneMatch(event -> event.get("type").asText().equals("message")),
+                "Delivered beyond the granted credit");
+
+        send("{\"op\":\"credit\",\"topic\":\"" + topic + "\",\"credit\":2}");
+        assertEquals(List.of("m2", "m3"), nextMessages(2));
+    }
+
+    @Test
+    @DisplayName("Publishes and unsubscribes are acknowledged with their id")
+    void whenPublishingAndUnsubscribing_thenCommandsAreAcknowledged() throws Exception {
+        send("{\"op\":\"subscribe\",\"id\":1,\"topic\":\"" + topic + "\",\"qos\":1}");
+        assertEquals("ack", next().get("type").asText());
+
+        publish(2, "hello");
+        JsonNode published = null;
+        while (published == null) {
+            JsonNode event = next();
+            if (event.get("type").asText().equals("ack")) {
+                published = event;
+            }
+        }
+        assertEquals(2, published.get("id").asLong());
+        assertEquals("PUBLISHED", published.get("outcome").asText());
+
+        send("{\"op\":\"unsubscribe\",\"id\":3,\"topic\":\"" + topic + "\"}");
+        JsonNode unsubscribed = next();
+        while (unsubscribed.get("type").asText().equals("message")) {
+            unsubscribed = next();
+        }
+        assertEquals("ack", unsubscribed.get("type").asText());
+        assertEquals(3, unsubscribed.get("id").asLong());
+    }
+
+    @Test
+    @DisplayName("Invalid commands are answered with an error frame and the connection stays usable")
+    void whenCommandIsInvalid_thenErrorIsReturned() throws Exception {
+        send("{\"op\":\"publish\",\"id\":1,\"topic\":\"" + topic + "\",\"qos\":5,\"payload\":\"x\"}");
+        JsonNode badQos = next();
+        assertEquals("error", badQos.get("type").asText());
+        assertEquals(1, badQos.get("id").asLong());
+
+        send("{\"op\":\"publish\",\"id\":2,\"topic\":\"" + topic + "/#\",\"qos\":1,\"payload\":\"x\"}");
+        JsonNode wildcard = next();
+        assertEquals("error", wildcard.get("type").asText());
+        assertEquals(2, wildcard.get("id").asLong());
+
+        send("{\"op\":\"credit\",\"id\":3,\"topic\":\"" + topic + "\",\"credit\":1}");
+        JsonNode notSubscribed = next();
+        assertEquals("error", notSubscribed.get("type").asText());
+        assertEquals("Not subscribed", notSubscribed.get("error").asText());
+
+        send("not json");
+        assertEquals("error", next().get("type").asText());
+
+        send("{\"op\":\"subscribe\",\"id\":4,\"topic\":\"" + topic + "\",\"qos\":1}");
+        JsonNode subscribed = next();
+        assertEquals("ack", subscribed.get("type").asText());
+        assertEquals(4, subscribed.get("id").asLong());
+    }
+}